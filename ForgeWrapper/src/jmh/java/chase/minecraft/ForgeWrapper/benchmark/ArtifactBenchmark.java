@@ -0,0 +1,57 @@
+package chase.minecraft.ForgeWrapper.benchmark;
+
+import chase.minecraft.ForgeWrapper.installer.json.Artifact;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Looking up artifacts by descriptor and resolving them below a libraries root, once per library and processor
+// argument in an install.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArtifactBenchmark
+{
+	@Param({"64", "512"})
+	public int count;
+	
+	private List<String> descriptors;
+	
+	private Artifact[] artifacts;
+	
+	private File root;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		// Copies, so lookups can't short cut on the pooled descriptor instances.
+		this.descriptors = Fixtures.descriptors(this.count).stream().map(String::new).toList();
+		this.artifacts = Fixtures.descriptors(this.count).stream().map(Artifact::from).toArray(Artifact[]::new);
+		this.root = new File(System.getProperty("java.io.tmpdir"), "libraries").getAbsoluteFile();
+	}
+	
+	@Benchmark
+	public void from(Blackhole hole)
+	{
+		for (String descriptor : this.descriptors)
+			hole.consume(Artifact.from(descriptor));
+	}
+	
+	@Benchmark
+	public void getLocalPath(Blackhole hole)
+	{
+		for (Artifact artifact : this.artifacts)
+			hole.consume(artifact.getLocalPath(this.root));
+	}
+	
+	// The pattern PostProcessors uses for [artifact] arguments.
+	@Benchmark
+	public void resolve(Blackhole hole)
+	{
+		for (String descriptor : this.descriptors)
+			hole.consume(Artifact.from(descriptor).getLocalPath(this.root).getAbsolutePath());
+	}
+}
@@ -0,0 +1,196 @@
+package chase.minecraft.ForgeWrapper.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Synthetic inputs shaped like a Forge installer, generated into a temp directory so the benchmarks run offline and
+// always see the same data. Everything is seeded, two runs hash and parse identical bytes.
+public class Fixtures
+{
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	
+	private static final String[] GROUPS = {"net.minecraftforge", "org.ow2.asm", "com.google.guava", "org.apache.logging.log4j", "cpw.mods", "de.oceanlabs.mcp", "net.sf.jopt-simple", "org.openjdk.nashorn"};
+	
+	public static Path createDirectory(String name) throws IOException
+	{
+		return Files.createTempDirectory("forgewrapper-jmh-" + name);
+	}
+	
+	public static void delete(Path root) throws IOException
+	{
+		if (root == null || !Files.exists(root))
+			return;
+		try (Stream<Path> paths = Files.walk(root))
+		{
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+				Files.deleteIfExists(path);
+		}
+	}
+	
+	public static Path createFile(Path dir, String name, long size) throws IOException
+	{
+		Path file = dir.resolve(name);
+		Random random = new Random(size);
+		byte[] buffer = new byte[65536];
+		try (OutputStream out = Files.newOutputStream(file))
+		{
+			for (long remaining = size; remaining > 0L; remaining -= buffer.length)
+			{
+				random.nextBytes(buffer);
+				out.write(buffer, 0, (int) Math.min(buffer.length, remaining));
+			}
+		}
+		return file;
+	}
+	
+	// group:name:version[:classifier][@ext], the mix of a Forge install profile.
+	public static List<String> descriptors(int count)
+	{
+		Random random = new Random(count);
+		List<String> ret = new ArrayList<>(count);
+		for (int x = 0; x < count; x++)
+		{
+			String descriptor = GROUPS[x % GROUPS.length] + ":lib" + x + ":" + (1 + random.nextInt(9)) + "." + random.nextInt(20) + "." + random.nextInt(100);
+			switch (x % 5)
+			{
+				case 1 -> descriptor += ":natives-linux";
+				case 2 -> descriptor += "@zip";
+				case 3 -> descriptor += ":mappings@txt";
+				default ->
+				{
+				}
+			}
+			ret.add(descriptor);
+		}
+		return ret;
+	}
+	
+	// The data tokens a Forge install resolves its processor arguments against.
+	public static Map<String, String> tokens()
+	{
+		Map<String, String> ret = new HashMap<>();
+		ret.put("SIDE", "client");
+		ret.put("MINECRAFT_JAR", "/home/user/.minecraft/versions/1.20.1/1.20.1.jar");
+		ret.put("MINECRAFT_VERSION", "1.20.1");
+		ret.put("ROOT", "/home/user/.minecraft");
+		ret.put("INSTALLER", "/home/user/Downloads/forge-1.20.1-47.1.0-installer.jar");
+		ret.put("LIBRARY_DIR", "/home/user/.minecraft/libraries");
+		ret.put("MAPPINGS", "/home/user/.minecraft/libraries/de/oceanlabs/mcp/mcp_config/1.20.1-20230612.114412/mcp_config-1.20.1-20230612.114412-mappings.txt");
+		ret.put("MOJMAPS", "/home/user/.minecraft/libraries/net/minecraft/client/1.20.1-20230612.114412/client-1.20.1-20230612.114412-mappings.txt");
+		ret.put("MERGED_MAPPINGS", "/home/user/.minecraft/libraries/de/oceanlabs/mcp/mcp_config/1.20.1-20230612.114412/mcp_config-1.20.1-20230612.114412-mappings-merged.txt");
+		ret.put("BINPATCH", "/tmp/forge_installer/data/client.lzma");
+		ret.put("MC_UNPACKED", "/home/user/.minecraft/libraries/net/minecraft/client/1.20.1-20230612.114412/client-1.20.1-20230612.114412-unpacked.jar");
+		ret.put("MC_SLIM", "/home/user/.minecraft/libraries/net/minecraft/client/1.20.1-20230612.114412/client-1.20.1-20230612.114412-slim.jar");
+		ret.put("MC_SLIM_SHA", "b2a4c3d1e0f9a8b7c6d5e4f3a2b1c0d9e8f7a6b5");
+		ret.put("MC_EXTRA", "/home/user/.minecraft/libraries/net/minecraft/client/1.20.1-20230612.114412/client-1.20.1-20230612.114412-extra.jar");
+		ret.put("MC_SRG", "/home/user/.minecraft/libraries/net/minecraft/client/1.20.1-20230612.114412/client-1.20.1-20230612.114412-srg.jar");
+		ret.put("PATCHED", "/home/user/.minecraft/libraries/net/minecraftforge/forge/1.20.1-47.1.0/forge-1.20.1-47.1.0-client.jar");
+		ret.put("PATCHED_SHA", "0f9e8d7c6b5a4f3e2d1c0b9a8f7e6d5c4b3a2f1e");
+		return ret;
+	}
+	
+	// Processor arguments as they appear in a Forge install profile.
+	public static List<String> arguments()
+	{
+		return List.of("--task", "MCP_DATA", "--input", "[de.oceanlabs.mcp:mcp_config:1.20.1-20230612.114412@zip]", "--output", "{MAPPINGS}", "--key", "mappings",
+				"--merge", "--official", "{MOJMAPS}", "--output", "{MERGED_MAPPINGS}", "--input", "{MINECRAFT_JAR}", "--slim", "{MC_SLIM}", "--extra", "{MC_EXTRA}", "--srg", "{MERGED_MAPPINGS}",
+				"--clean", "{MC_SRG}", "--output", "{PATCHED}", "--apply", "{BINPATCH}", "--data", "--ann", "{MINECRAFT_VERSION}", "--side", "{SIDE}", "'{QUOTED}'", "{ROOT}/versions/{MINECRAFT_VERSION}/{MINECRAFT_VERSION}.jar");
+	}
+	
+	// An installer jar with an install profile and version json listing the given number of libraries each.
+	public static File createInstaller(Path dir, int libraries) throws IOException
+	{
+		File ret = dir.resolve("installer-" + libraries + ".jar").toFile();
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(ret.toPath())))
+		{
+			zip.putNextEntry(new ZipEntry("install_profile.json"));
+			zip.write(GSON.toJson(profile(libraries)).getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+			zip.putNextEntry(new ZipEntry("version.json"));
+			zip.write(GSON.toJson(version(libraries)).getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		return ret;
+	}
+	
+	private static Map<String, Object> profile(int libraries)
+	{
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("_comment_", List.of("Please do not automate the download and installation of Forge.", "Our efforts are supported by ads from the download page."));
+		ret.put("spec", 1);
+		ret.put("profile", "forge");
+		ret.put("version", "1.20.1-forge-47.1.0");
+		ret.put("path", null);
+		ret.put("minecraft", "1.20.1");
+		ret.put("serverJarPath", "{LIBRARY_DIR}/net/minecraft/server/{MINECRAFT_VERSION}/server-{MINECRAFT_VERSION}.jar");
+		ret.put("icon", "data:image/png;base64," + "A".repeat(8192));
+		ret.put("json", "/version.json");
+		ret.put("logo", "/big_logo.png");
+		ret.put("mirrorList", "https://files.minecraftforge.net/mirrors-2.0.json");
+		ret.put("welcome", "Welcome to the simple Forge installer.");
+		Map<String, Object> data = new LinkedHashMap<>();
+		for (Map.Entry<String, String> e : tokens().entrySet())
+			data.put(e.getKey(), Map.of("client", e.getValue(), "server", e.getValue().replace("client", "server")));
+		ret.put("data", data);
+		List<Object> processors = new ArrayList<>();
+		List<String> args = arguments();
+		for (int x = 0; x < 8; x++)
+		{
+			Map<String, Object> proc = new LinkedHashMap<>();
+			proc.put("sides", List.of("client", "server"));
+			proc.put("jar", "net.minecraftforge:installertools:1.3." + x);
+			proc.put("classpath", descriptors(12));
+			proc.put("args", args.subList(0, Math.min(args.size(), 8 + x * 4)));
+			proc.put("outputs", Map.of("{MC_SLIM}", "{MC_SLIM_SHA}", "{PATCHED}", "{PATCHED_SHA}"));
+			processors.add(proc);
+		}
+		ret.put("processors", processors);
+		ret.put("libraries", libraries(libraries));
+		return ret;
+	}
+	
+	private static Map<String, Object> version(int libraries)
+	{
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("id", "1.20.1-forge-47.1.0");
+		ret.put("time", "2023-07-12T00:00:00+00:00");
+		ret.put("releaseTime", "2023-07-12T00:00:00+00:00");
+		ret.put("type", "release");
+		ret.put("mainClass", "cpw.mods.bootstraplauncher.BootstrapLauncher");
+		ret.put("inheritsFrom", "1.20.1");
+		List<String> jvm = new ArrayList<>();
+		for (int x = 0; x < 40; x++)
+			jvm.add("-DignoreList=bootstraplauncher,securejarhandler,asm-commons,asm-util,asm-analysis,asm-tree,asm," + x);
+		ret.put("arguments", Map.of("game", List.of("--launchTarget", "forgeclient", "--fml.forgeVersion", "47.1.0"), "jvm", jvm));
+		ret.put("libraries", libraries(libraries));
+		return ret;
+	}
+	
+	private static List<Object> libraries(int count)
+	{
+		List<Object> ret = new ArrayList<>(count);
+		Random random = new Random(count * 31L);
+		for (String descriptor : descriptors(count))
+		{
+			String path = descriptor.replace(':', '/') + ".jar";
+			Map<String, Object> artifact = new LinkedHashMap<>();
+			artifact.put("path", path);
+			artifact.put("url", "https://maven.minecraftforge.net/" + path);
+			artifact.put("sha1", String.format(Locale.ROOT, "%040x", new java.math.BigInteger(160, random)));
+			artifact.put("size", 1024 + random.nextInt(4 * 1024 * 1024));
+			ret.add(Map.of("name", descriptor, "downloads", Map.of("artifact", artifact)));
+		}
+		return ret;
+	}
+}
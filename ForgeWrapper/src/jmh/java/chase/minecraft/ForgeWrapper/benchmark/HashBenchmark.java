@@ -0,0 +1,76 @@
+package chase.minecraft.ForgeWrapper.benchmark;
+
+import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.HashFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// SHA-1 of a file through DownloadUtils (no checksum cache open, so it always hashes) and straight through
+// HashFunction, from one block up to a large installer jar, and of a byte array without the file system.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HashBenchmark
+{
+	@Benchmark
+	public String getSha1(OnDisk disk)
+	{
+		return DownloadUtils.getSha1(disk.file.toFile());
+	}
+	
+	@Benchmark
+	public String hashFile(OnDisk disk) throws IOException
+	{
+		return HashFunction.SHA1.hash(disk.file);
+	}
+	
+	@Benchmark
+	public String hashBytes(InMemory memory)
+	{
+		return HashFunction.SHA1.hash(memory.data);
+	}
+	
+	@State(Scope.Benchmark)
+	public static class OnDisk
+	{
+		@Param({"4096", "1048576", "16777216", "67108864"})
+		public long size;
+		
+		private Path dir;
+		
+		private Path file;
+		
+		@Setup(Level.Trial)
+		public void setup() throws IOException
+		{
+			this.dir = Fixtures.createDirectory("hash");
+			this.file = Fixtures.createFile(this.dir, "data.bin", this.size);
+		}
+		
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException
+		{
+			Fixtures.delete(this.dir);
+		}
+	}
+	
+	// Metadata and manifests are hashed in memory, they stay well below the file sizes.
+	@State(Scope.Benchmark)
+	public static class InMemory
+	{
+		@Param({"4096", "1048576", "16777216"})
+		public int length;
+		
+		private byte[] data;
+		
+		@Setup(Level.Trial)
+		public void setup()
+		{
+			this.data = new byte[this.length];
+			new Random(this.length).nextBytes(this.data);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package chase.minecraft.ForgeWrapper.benchmark;
+
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
+import chase.minecraft.ForgeWrapper.installer.json.InstallV1;
+import chase.minecraft.ForgeWrapper.installer.json.Util;
+import chase.minecraft.ForgeWrapper.installer.json.Version;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Reading the install profile and version json out of an installer, what every install does before anything else.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileBenchmark
+{
+	// A vanilla sized Forge profile and a large modded one.
+	@Param({"60", "600"})
+	public int libraries;
+	
+	private Path dir;
+	
+	private InstallerArchive archive;
+	
+	private InstallV1 profile;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		this.dir = Fixtures.createDirectory("profile");
+		File installer = Fixtures.createInstaller(this.dir, this.libraries);
+		this.archive = InstallerArchive.open(installer);
+		this.profile = Util.loadInstallProfile(this.archive);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		this.archive.close();
+		Fixtures.delete(this.dir);
+	}
+	
+	@Benchmark
+	public InstallV1 loadInstallProfile()
+	{
+		return Util.loadInstallProfile(this.archive);
+	}
+	
+	@Benchmark
+	public Version loadVersion()
+	{
+		return Util.loadVersion(this.archive, this.profile);
+	}
+}
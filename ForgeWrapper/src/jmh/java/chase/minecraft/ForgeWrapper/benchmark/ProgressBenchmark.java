@@ -0,0 +1,67 @@
+package chase.minecraft.ForgeWrapper.benchmark;
+
+import chase.minecraft.ForgeWrapper.installer.actions.AsyncProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.JsonProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+// Events per second through the progress sinks, the way the downloaders and processors report them. The output is
+// discarded so only the formatting and hand off are measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProgressBenchmark
+{
+	@Param({"text", "json", "async-text", "async-json"})
+	public String sink;
+	
+	private ProgressCallback monitor;
+	
+	private AsyncProgress async;
+	
+	private double progress;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Writer output = Writer.nullWriter();
+		ProgressCallback base = this.sink.endsWith("json") ? new JsonProgress(output) : ProgressCallback.withWriter(output);
+		if (this.sink.startsWith("async-"))
+		{
+			this.async = new AsyncProgress(base, output, false);
+			this.monitor = this.async;
+		} else
+		{
+			this.monitor = base;
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		if (this.async != null)
+			this.async.close();
+	}
+	
+	@Benchmark
+	public void message()
+	{
+		this.monitor.message("Considering library net.minecraftforge:forge:1.20.1-47.1.0:universal");
+	}
+	
+	@Benchmark
+	public void progress()
+	{
+		this.progress = (this.progress >= 1.0) ? 0.0 : this.progress + 0.001;
+		this.monitor.progress(this.progress);
+	}
+	
+	@Benchmark
+	public void artifact()
+	{
+		this.monitor.artifact("net/minecraftforge/forge/1.20.1-47.1.0/forge-1.20.1-47.1.0-universal.jar", ProgressCallback.ArtifactState.VERIFIED, 2_641_920L);
+	}
+}
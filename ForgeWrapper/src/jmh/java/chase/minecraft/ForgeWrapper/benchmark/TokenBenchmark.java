@@ -0,0 +1,41 @@
+package chase.minecraft.ForgeWrapper.benchmark;
+
+import chase.minecraft.ForgeWrapper.installer.json.Util;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Resolving a processor's arguments against the install data, the way PostProcessors does for every processor.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenBenchmark
+{
+	private Map<String, String> tokens;
+	
+	private List<String> arguments;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		this.tokens = Fixtures.tokens();
+		// Artifact arguments don't go through the tokens.
+		this.arguments = Fixtures.arguments().stream().filter(arg -> !arg.startsWith("[")).toList();
+	}
+	
+	@Benchmark
+	public void replaceTokens(Blackhole hole)
+	{
+		for (String arg : this.arguments)
+			hole.consume(Util.replaceTokens(this.tokens, arg));
+	}
+	
+	@Benchmark
+	public String replaceSingle()
+	{
+		return Util.replaceTokens(this.tokens, "{ROOT}/versions/{MINECRAFT_VERSION}/{MINECRAFT_VERSION}.jar");
+	}
+}
@@ -0,0 +1,242 @@
+package chase.minecraft.ForgeWrapper;
+
+import chase.minecraft.ForgeWrapper.installer.LibraryStore;
+import chase.minecraft.ForgeWrapper.installer.ProcessorCache;
+import chase.minecraft.ForgeWrapper.installer.RateLimiter;
+import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
+import chase.minecraft.ForgeWrapper.installer.actions.Actions;
+import chase.minecraft.ForgeWrapper.installer.actions.AsyncProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.JsonProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
+import chase.minecraft.ForgeWrapper.installer.json.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Runs many installs in one process so they share the warm JVM, the HTTP client, the checksum caches and every
+// downloaded or built artifact. The manifest is a json array of jobs:
+// [{"installer": "forge-1.20.1-installer.jar", "output": "instances/a", "side": "client", "share": 0.5}, ...]
+// A share limits the job to that fraction of the --net-rate and --disk-rate limits.
+// Without a shared store the jobs share a temporary one that is removed once the batch is done.
+public class BatchInstaller
+{
+	public static final int SUCCESS = 0;
+	public static final int FAILED = 1;
+	public static final int INVALID = 2;
+	
+	private final List<Job> jobs;
+	private final int concurrency;
+	private final boolean json;
+	private final boolean verbose;
+	private final PrintStream out = System.out;
+	
+	public BatchInstaller(List<Job> jobs, int concurrency, boolean json, boolean verbose)
+	{
+		this.jobs = jobs;
+		this.concurrency = Math.max(1, concurrency);
+		this.json = json;
+		this.verbose = verbose;
+	}
+	
+	public static List<Job> loadManifest(File manifest) throws IOException
+	{
+		try (Reader reader = new InputStreamReader(Files.newInputStream(manifest.toPath()), StandardCharsets.UTF_8))
+		{
+			Job[] jobs = Util.GSON.fromJson(reader, Job[].class);
+			if (jobs == null)
+				return new ArrayList<>();
+			File base = manifest.getAbsoluteFile().getParentFile();
+			for (Job job : jobs)
+				job.resolve(base);
+			return Arrays.asList(jobs);
+		}
+	}
+	
+	// Returns the exit status of every job in manifest order.
+	public int[] run() throws InterruptedException, IOException
+	{
+		SimpleInstaller.headless = true;
+		Path temp = null;
+		if (LibraryStore.get() == null)
+		{
+			temp = Files.createTempDirectory("forgewrapper-batch");
+			LibraryStore.setRoot(temp.toFile());
+			ProcessorCache.setRoot(temp.resolve("processors").toFile());
+		}
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.concurrency, Math.max(1, this.jobs.size())), r ->
+		{
+			Thread thread = new Thread(r, "batch-job-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		int[] status = new int[this.jobs.size()];
+		try
+		{
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int x = 0; x < this.jobs.size(); x++)
+			{
+				Job job = this.jobs.get(x);
+				String prefix = String.format("[%d/%d] ", x + 1, this.jobs.size());
+				ProgressCallback sink = this.json ? new JsonProgress(this::println, Map.of("job", String.valueOf(x + 1))) : prefixed(prefix);
+				futures.add(executor.submit(() ->
+				{
+					try (AsyncProgress monitor = new AsyncProgress(sink, null, this.verbose))
+					{
+						return job.run(monitor);
+					}
+				}));
+			}
+			for (int x = 0; x < futures.size(); x++)
+			{
+				try
+				{
+					status[x] = futures.get(x).get();
+				} catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+					status[x] = FAILED;
+				}
+				if (this.json)
+					println(String.format("{\"job\":\"%d\",\"event\":\"done\",\"status\":%d}", x + 1, status[x]));
+			}
+		} finally
+		{
+			executor.shutdownNow();
+			if (temp != null)
+			{
+				LibraryStore.setRoot(null);
+				ProcessorCache.setRoot(null);
+				delete(temp);
+			}
+		}
+		return status;
+	}
+	
+	private ProgressCallback prefixed(String prefix)
+	{
+		return (message, priority) ->
+		{
+			for (String line : message.split("\n"))
+				println(prefix + line);
+		};
+	}
+	
+	private void println(String line)
+	{
+		synchronized (this.out)
+		{
+			this.out.println(line);
+		}
+	}
+	
+	private static void delete(Path root)
+	{
+		try (Stream<Path> paths = Files.walk(root))
+		{
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		} catch (IOException e)
+		{
+			System.err.printf("Failed to delete temporary store %s: %s\n", root, e.getMessage());
+		}
+	}
+	
+	public static class Job
+	{
+		private String installer;
+		private String output;
+		private String side = "client";
+		private double share = 1.0;
+		
+		private transient File installerFile;
+		private transient File outputDir;
+		
+		private Job()
+		{
+		}
+		
+		public Job(File installer, File output, String side)
+		{
+			this(installer, output, side, 1.0);
+		}
+		
+		public Job(File installer, File output, String side, double share)
+		{
+			this.share = share;
+			this.installer = (installer == null) ? null : installer.getPath();
+			this.output = (output == null) ? null : output.getPath();
+			this.side = (side == null) ? "client" : side;
+			this.installerFile = installer;
+			this.outputDir = output;
+		}
+		
+		private void resolve(File base)
+		{
+			this.installerFile = (this.installer == null) ? null : base.toPath().resolve(this.installer).toFile();
+			this.outputDir = (this.output == null) ? null : base.toPath().resolve(this.output).toFile();
+		}
+		
+		public File getInstaller()
+		{
+			return this.installerFile;
+		}
+		
+		public File getOutput()
+		{
+			return this.outputDir;
+		}
+		
+		public String getSide()
+		{
+			return this.side;
+		}
+		
+		int run(ProgressCallback monitor)
+		{
+			Actions action;
+			try
+			{
+				action = Actions.valueOf(this.side.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException | NullPointerException e)
+			{
+				monitor.message("Invalid side: " + this.side);
+				return INVALID;
+			}
+			if (this.installerFile == null || !this.installerFile.isFile())
+			{
+				monitor.message("Installer file not found: " + this.installerFile);
+				return INVALID;
+			}
+			if (this.outputDir == null)
+			{
+				monitor.message("Missing output for " + this.installerFile);
+				return INVALID;
+			}
+			if (this.outputDir.mkdirs())
+				monitor.message("Creating output directory: " + this.outputDir);
+			RateLimiter.beginJob(this.outputDir.getName(), this.share);
+			try
+			{
+				return new Installer(this.installerFile, this.outputDir, action, monitor).install() ? SUCCESS : FAILED;
+			} catch (RuntimeException e)
+			{
+				e.printStackTrace();
+				monitor.message("Install failed: " + e);
+				return FAILED;
+			} finally
+			{
+				RateLimiter.endJob();
+			}
+		}
+	}
+}
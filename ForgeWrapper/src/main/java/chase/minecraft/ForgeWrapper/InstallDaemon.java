@@ -0,0 +1,368 @@
+package chase.minecraft.ForgeWrapper;
+
+import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
+import chase.minecraft.ForgeWrapper.installer.actions.AsyncProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.JsonProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.PostProcessors;
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps ForgeWrapper resident so installs don't pay for a cold JVM, the HTTP client, the parsed version manifest and
+// the processor class loaders stay warm between requests.
+// The protocol is one json object per line in both directions, over stdin/stdout or a unix domain socket:
+//   {"id": "1", "type": "install", "installer": "forge-installer.jar", "output": "instances/a", "side": "client", "verbose": false, "share": 0.5}
+//   {"id": "1", "type": "cancel"}
+//   {"type": "shutdown"}
+// Every install answers with the JsonProgress events of the install tagged with its id and finishes with
+// {"id": "1", "event": "done", "status": 0}. Status codes are the ones of BatchInstaller plus CANCELED.
+public class InstallDaemon
+{
+	public static final int CANCELED = 3;
+	
+	private static final Gson GSON = new Gson();
+	
+	private static final String CLOSE = new String("close");
+	
+	private final ExecutorService executor;
+	
+	public InstallDaemon()
+	{
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(r ->
+		{
+			Thread thread = new Thread(r, "daemon-install-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		SimpleInstaller.headless = true;
+		if (PostProcessors.RUNTIME == null)
+			PostProcessors.RUNTIME = PostProcessors.newRuntime(ProgressCallback.TO_STD_OUT);
+	}
+	
+	// Serves requests on stdin/stdout. Anything else the installer or the processors print goes to stderr so it
+	// can't corrupt the protocol.
+	public void serveStdio() throws IOException
+	{
+		PrintStream out = System.out;
+		System.setOut(System.err);
+		new Session(System.in, out).run();
+		this.executor.shutdownNow();
+	}
+	
+	public void serveSocket(Path path) throws IOException
+	{
+		Files.deleteIfExists(path);
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX))
+		{
+			server.bind(UnixDomainSocketAddress.of(path));
+			System.setOut(System.err);
+			System.err.println("Listening on " + path);
+			while (true)
+			{
+				SocketChannel channel = server.accept();
+				Session session = new Session(Channels.newInputStream(channel), newOutputStream(channel));
+				Thread thread = new Thread(() ->
+				{
+					if (session.run())
+						closeServer(server);
+					try
+					{
+						channel.close();
+					} catch (IOException ignored)
+					{
+					}
+				}, "daemon-session");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} catch (AsynchronousCloseException ignored)
+		{
+			// A shutdown request closes the server socket to stop accepting.
+		} finally
+		{
+			Files.deleteIfExists(path);
+			this.executor.shutdownNow();
+		}
+	}
+	
+	// Channels.newOutputStream would wait for the blocking lock the reading thread holds while it waits for input.
+	private static OutputStream newOutputStream(SocketChannel channel)
+	{
+		return new OutputStream()
+		{
+			public void write(int b) throws IOException
+			{
+				write(new byte[]{(byte) b}, 0, 1);
+			}
+			
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+		};
+	}
+	
+	private static void closeServer(ServerSocketChannel server)
+	{
+		try
+		{
+			server.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+	
+	private class Session
+	{
+		private final InputStream input;
+		
+		private final Writer output;
+		
+		// Events are written by one thread, canceling an install interrupts its thread and an interrupted thread
+		// writing to a socket channel would close it.
+		private final BlockingQueue<String> outbox = new LinkedBlockingQueue<>();
+		
+		private final Map<String, Request> running = new ConcurrentHashMap<>();
+		
+		private Session(InputStream input, OutputStream output)
+		{
+			this.input = input;
+			this.output = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		}
+		
+		// Returns true if the client asked the daemon to shut down. Installs still running when the client goes away
+		// are canceled, a shutdown request waits for them.
+		private boolean run()
+		{
+			Thread writer = new Thread(this::write, "daemon-writer");
+			writer.setDaemon(true);
+			writer.start();
+			try
+			{
+				return read();
+			} finally
+			{
+				this.outbox.add(CLOSE);
+				try
+				{
+					writer.join();
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		private boolean read()
+		{
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(this.input, StandardCharsets.UTF_8)))
+			{
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					if (line.isBlank())
+						continue;
+					JsonObject request;
+					try
+					{
+						request = JsonParser.parseString(line).getAsJsonObject();
+					} catch (JsonParseException | IllegalStateException e)
+					{
+						send(event(null, "error").put("message", "Invalid request: " + e.getMessage()));
+						continue;
+					}
+					String id = getString(request, "id");
+					String type = getString(request, "type");
+					if ("install".equals(type))
+					{
+						install(id, request);
+					} else if ("cancel".equals(type))
+					{
+						Request running = (id == null) ? null : this.running.get(id);
+						if (running != null)
+							running.cancel();
+					} else if ("shutdown".equals(type))
+					{
+						for (Request running : this.running.values())
+							running.await();
+						return true;
+					} else
+					{
+						send(event(id, "error").put("message", "Unknown request type: " + type));
+					}
+				}
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			for (Request running : this.running.values())
+				running.cancel();
+			return false;
+		}
+		
+		private void install(String id, JsonObject request)
+		{
+			if (id == null || this.running.containsKey(id))
+			{
+				send(event(id, "error").put("message", (id == null) ? "Missing request id" : "Request id already running: " + id));
+				return;
+			}
+			String installer = getString(request, "installer");
+			String output = getString(request, "output");
+			BatchInstaller.Job job = new BatchInstaller.Job((installer == null) ? null : new File(installer), (output == null) ? null : new File(output), getString(request, "side"), getShare(request));
+			boolean verbose = request.has("verbose") && request.get("verbose").isJsonPrimitive() && request.get("verbose").getAsBoolean();
+			ProgressCallback sink = new JsonProgress(this.outbox::add, Map.of("id", id));
+			Request pending = new Request();
+			this.running.put(id, pending);
+			InstallDaemon.this.executor.execute(() ->
+			{
+				int status;
+				pending.attach();
+				try (AsyncProgress monitor = new AsyncProgress(sink, null, verbose))
+				{
+					status = job.run(monitor);
+				} catch (Throwable e)
+				{
+					e.printStackTrace();
+					status = BatchInstaller.FAILED;
+				}
+				if (pending.detach())
+					status = CANCELED;
+				this.running.remove(id);
+				send(event(id, "done").put("status", status));
+				pending.finished.countDown();
+			});
+		}
+		
+		private void send(Event event)
+		{
+			this.outbox.add(GSON.toJson(event.json));
+		}
+		
+		private void write()
+		{
+			try
+			{
+				while (true)
+				{
+					String line = this.outbox.take();
+					if (line == CLOSE)
+						break;
+					this.output.write(line);
+					this.output.write('\n');
+					if (this.outbox.isEmpty())
+						this.output.flush();
+				}
+				this.output.flush();
+			} catch (IOException | InterruptedException ignored)
+			{
+				// The client went away, the read loop notices and cancels what is still running.
+			}
+		}
+	}
+	
+	private static class Request
+	{
+		private final CountDownLatch finished = new CountDownLatch(1);
+		
+		private Thread thread = null;
+		
+		private boolean canceled = false;
+		
+		private synchronized void attach()
+		{
+			this.thread = Thread.currentThread();
+			if (this.canceled)
+				this.thread.interrupt();
+		}
+		
+		// Returns true if the request was canceled. Clears the interrupt so the pooled thread can be reused.
+		private synchronized boolean detach()
+		{
+			this.thread = null;
+			Thread.interrupted();
+			return this.canceled;
+		}
+		
+		private synchronized void cancel()
+		{
+			this.canceled = true;
+			if (this.thread != null)
+				this.thread.interrupt();
+		}
+		
+		private void await()
+		{
+			try
+			{
+				this.finished.await();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	private static Event event(String id, String name)
+	{
+		Event event = new Event();
+		if (id != null)
+			event.json.addProperty("id", id);
+		event.json.addProperty("event", name);
+		return event;
+	}
+	
+	private static double getShare(JsonObject json)
+	{
+		try
+		{
+			return (json.has("share") && json.get("share").isJsonPrimitive()) ? json.get("share").getAsDouble() : 1.0;
+		} catch (NumberFormatException e)
+		{
+			return 1.0;
+		}
+	}
+	
+	private static String getString(JsonObject json, String key)
+	{
+		return (json.has(key) && json.get(key).isJsonPrimitive()) ? json.get(key).getAsString() : null;
+	}
+	
+	private static class Event
+	{
+		private final JsonObject json = new JsonObject();
+		
+		private Event put(String key, String value)
+		{
+			this.json.addProperty(key, value);
+			return this;
+		}
+		
+		private Event put(String key, Number value)
+		{
+			this.json.addProperty(key, value);
+			return this;
+		}
+	}
+}
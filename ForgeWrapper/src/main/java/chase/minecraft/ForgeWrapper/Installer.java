@@ -1,5 +1,11 @@
 package chase.minecraft.ForgeWrapper;
 
+import chase.minecraft.ForgeWrapper.installer.ChecksumCache;
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
+import chase.minecraft.ForgeWrapper.installer.LibraryStore;
+import chase.minecraft.ForgeWrapper.installer.MirrorSelector;
+import chase.minecraft.ForgeWrapper.installer.RateLimiter;
+import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
 import chase.minecraft.ForgeWrapper.installer.actions.Action;
 import chase.minecraft.ForgeWrapper.installer.actions.ActionCanceledException;
 import chase.minecraft.ForgeWrapper.installer.actions.Actions;
@@ -21,19 +27,48 @@ public class Installer
 	private final File installer;
 	private final File instance;
 	private final File launcherProfile;
+	private final Actions side;
+	private final ProgressCallback monitor;
 	
 	public Installer(File installer, File instance, boolean verbose)
+	{
+		this(installer, instance, Actions.CLIENT, ProgressCallback.withOutputs(System.out));
+	}
+	
+	public Installer(File installer, File instance, Actions side, ProgressCallback monitor)
 	{
 		this.installer = installer;
 		this.instance = instance;
 		this.launcherProfile = Path.of(instance.getPath(), "launcher_profiles.json").toFile();
+		this.side = side;
+		this.monitor = monitor;
 	}
 	
 	public boolean install()
 	{
 		createTempLauncherJson();
 		
-		InstallV1 profile = Util.loadInstallProfile(installer);
+		try (InstallerArchive archive = InstallerArchive.open(this.installer))
+		{
+			return install(archive);
+		} catch (IOException e)
+		{
+			System.err.printf("Failed to read installer %s: %s", this.installer, e.getMessage());
+			e.printStackTrace();
+			return false;
+		} finally
+		{
+			// Not deleteOnExit, a daemon runs many installs and would keep every one of them until it exits.
+			this.launcherProfile.delete();
+		}
+	}
+	
+	private boolean install(InstallerArchive archive)
+	{
+		InstallV1 profile = Util.loadInstallProfile(archive);
+		// Probe the mirrors while the install gets going, the first library download picks the fastest.
+		if (profile.getMirrorList() != null && SimpleInstaller.mirror == null)
+			MirrorSelector.prefetch(profile.getMirrorList());
 		Map<String, Function<ProgressCallback, Action>> actions = new HashMap<>();
 		List<OptionalListEntry> optionals = new ArrayList<>();
 		
@@ -43,10 +78,16 @@ public class Installer
 			return (ent.isEmpty() || ent.get().isEnabled());
 		};
 		
-		Action action = Actions.CLIENT.getAction(profile, ProgressCallback.withOutputs(System.out));
+		Action action = this.side.getAction(profile, archive, this.monitor);
+		LibraryStore store = LibraryStore.get();
+		boolean success = false;
+		this.monitor.phaseStart("install");
+		ChecksumCache libraries = ChecksumCache.open(new File(this.instance, "libraries"));
+		ChecksumCache shared = (store == null) ? null : ChecksumCache.open(store.getRoot());
 		try
 		{
-			if (action.run(this.instance, optPred, this.installer))
+			success = action.run(this.instance, optPred, this.installer);
+			if (success)
 			{
 				return true;
 			}
@@ -58,6 +99,18 @@ public class Installer
 		{
 			System.err.printf("There was an exception running task: %s", e.getMessage());
 			e.printStackTrace();
+		} finally
+		{
+			libraries.close();
+			if (shared != null)
+				shared.close();
+			RateLimiter network = RateLimiter.network();
+			if (network != null)
+				this.monitor.message(network.describe());
+			RateLimiter disk = RateLimiter.disk();
+			if (disk != null)
+				this.monitor.message(disk.describe());
+			this.monitor.phaseEnd("install", success);
 		}
 		return false;
 	}
@@ -68,9 +121,6 @@ public class Installer
 		try (BufferedWriter writer = new BufferedWriter(new FileWriter(launcherProfile)))
 		{
 			writer.write("{\"profiles\": {}}");
-			writer.flush();
-			writer.close();
-			launcherProfile.deleteOnExit();
 		} catch (IOException e)
 		{
 			throw new RuntimeException(e);
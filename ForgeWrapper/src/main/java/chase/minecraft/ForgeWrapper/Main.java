@@ -1,17 +1,23 @@
 package chase.minecraft.ForgeWrapper;
 
+import chase.minecraft.ForgeWrapper.installer.LibraryStore;
+import chase.minecraft.ForgeWrapper.installer.OutputCapture;
+import chase.minecraft.ForgeWrapper.installer.ProcessorCache;
+import chase.minecraft.ForgeWrapper.installer.RateLimiter;
+import chase.minecraft.ForgeWrapper.installer.actions.Actions;
+import chase.minecraft.ForgeWrapper.installer.actions.AsyncProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.JsonProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.PostProcessors;
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
 import org.apache.commons.cli.*;
 
-import java.io.File;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.List;
 
 public class Main
 {
-	public static File installer;
-	
 	public static void main(String[] args)
 	{
 		CommandLineParser parser = new DefaultParser();
@@ -20,6 +26,19 @@ public class Main
 		options.addOption("h", "help", false, "Display's the help");
 		options.addOption("i", "installer", true, "The path to the forge installer jar");
 		options.addOption("o", "output", true, "The path to the output");
+		options.addOption("p", "processors", true, "The maximum number of independent post processors to run at once");
+		options.addOption("s", "store", true, "A shared library store, libraries and post processor outputs are reused from here instead of downloaded or built again");
+		options.addOption("b", "batch", true, "A json manifest of installs to run in this process: [{\"installer\": ..., \"output\": ..., \"side\": \"client\"}]");
+		options.addOption("j", "jobs", true, "The maximum number of batch installs to run at once");
+		options.addOption("d", "daemon", false, "Stay resident and serve install requests, one json object per line on stdin/stdout");
+		options.addOption("u", "socket", true, "Stay resident and serve install requests on this unix domain socket");
+		options.addOption("f", "format", true, "The progress output format: text (default) or json, one event per line");
+		options.addOption("c", "cache-size", true, "The maximum size in MB of the post processor outputs kept in the shared store");
+		options.addOption("v", "verbose", false, "Log every library, checksum and processor detail");
+		options.addOption("n", "net-rate", true, "Limit the network bytes read by the whole process, in KB per second, 0 for unlimited");
+		options.addOption("w", "disk-rate", true, "Limit the bytes written to disk by downloads and extraction, in KB per second, 0 for unlimited");
+		options.addOption("t", "tail", true, "The number of lines of each post processor's output to show, the full output is in logs/processors");
+		options.addOption("r", "progress-rate", true, "The minimum number of milliseconds between two progress updates");
 		
 		if (args.length == 0)
 		{
@@ -31,38 +50,134 @@ public class Main
 			if (cmd.hasOption('h'))
 			{
 				printHelp(options, args);
+			} else if (cmd.hasOption('d') || cmd.hasOption('u'))
+			{
+				applySharedOptions(cmd);
+				InstallDaemon daemon = new InstallDaemon();
+				if (cmd.hasOption('u'))
+					daemon.serveSocket(Path.of(cmd.getOptionValue('u')));
+				else
+					daemon.serveStdio();
+				System.exit(0);
+			} else if (cmd.hasOption('b'))
+			{
+				applySharedOptions(cmd);
+				File manifest = Path.of(cmd.getOptionValue('b')).toFile();
+				List<BatchInstaller.Job> jobs = BatchInstaller.loadManifest(manifest);
+				int concurrency = cmd.hasOption('j') ? getInt(cmd, 'j') : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+				boolean json = isJson(cmd);
+				BatchInstaller batch = new BatchInstaller(jobs, concurrency, json, cmd.hasOption('v'));
+				if (json)
+					System.setOut(System.err);
+				int[] status = batch.run();
+				int failed = 0;
+				System.out.println("Batch results:");
+				for (int x = 0; x < jobs.size(); x++)
+				{
+					System.out.printf("  [%d/%d] exit=%d %s -> %s\n", x + 1, jobs.size(), status[x], jobs.get(x).getInstaller(), jobs.get(x).getOutput());
+					if (status[x] != BatchInstaller.SUCCESS)
+						failed++;
+				}
+				System.out.printf("%d of %d installs succeeded\n", jobs.size() - failed, jobs.size());
+				System.exit(failed == 0 ? 0 : 1);
 			} else if (cmd.hasOption('i') && cmd.hasOption('o'))
 			{
 				boolean verbose = cmd.hasOption('v');
-				Main.installer = Path.of(cmd.getOptionValue('i')).toFile();
+				// Keep stdout for the progress, in json mode anything else printed goes to stderr.
+				PrintStream stdout = System.out;
+				if (isJson(cmd))
+					System.setOut(System.err);
+				File installerFile = Path.of(cmd.getOptionValue('i')).toFile();
 				File output = Path.of(cmd.getOptionValue('o')).toFile();
 				if (output.mkdirs())
 				{
 					System.out.printf("Creating output directory: %s\n", output);
 				}
-				if (!Main.installer.exists())
+				if (!installerFile.exists())
 				{
-					System.err.printf("Installer file not found: %s\n", Main.installer);
+					System.err.printf("Installer file not found: %s\n", installerFile);
 					System.exit(1);
 				}
-				Installer installer = new Installer(Main.installer, output, verbose);
-				installer.install();
+				applySharedOptions(cmd);
+				Writer out = new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+				ProgressCallback sink = isJson(cmd) ? new JsonProgress(out) : ProgressCallback.withWriter(out);
+				try (AsyncProgress monitor = new AsyncProgress(sink, out, verbose))
+				{
+					Installer installer = new Installer(installerFile, output, Actions.CLIENT, monitor);
+					installer.install();
+				}
 			}
 		} catch (ParseException e)
 		{
+			System.err.println(e.getMessage());
 			printHelp(options, args);
+		} catch (IOException | InterruptedException e)
+		{
+			System.err.printf("Install failed: %s\n", e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
 		}
 		
 	}
 	
-	public static URLClassLoader getInstallerClassLoader()
+	private static boolean isJson(CommandLine cmd)
+	{
+		return "json".equalsIgnoreCase(cmd.getOptionValue('f', "text"));
+	}
+	
+	private static void applySharedOptions(CommandLine cmd) throws ParseException
+	{
+		if (cmd.hasOption('p'))
+		{
+			PostProcessors.THREADS = getInt(cmd, 'p');
+		}
+		if (cmd.hasOption('s'))
+		{
+			File store = Path.of(cmd.getOptionValue('s')).toFile();
+			LibraryStore.setRoot(store);
+			ProcessorCache.setRoot(new File(store, "processors"));
+		}
+		if (cmd.hasOption('c'))
+		{
+			ProcessorCache.MAX_SIZE = getLong(cmd, 'c') * 1024L * 1024L;
+		}
+		if (cmd.hasOption('n'))
+		{
+			long rate = getLong(cmd, 'n');
+			RateLimiter.NETWORK = (rate == 0L) ? null : new RateLimiter("Network", rate * 1024L);
+		}
+		if (cmd.hasOption('w'))
+		{
+			long rate = getLong(cmd, 'w');
+			RateLimiter.DISK = (rate == 0L) ? null : new RateLimiter("Disk", rate * 1024L);
+		}
+		if (cmd.hasOption('t'))
+		{
+			OutputCapture.TAIL = getInt(cmd, 't');
+		}
+		if (cmd.hasOption('r'))
+		{
+			AsyncProgress.PROGRESS_INTERVAL = getLong(cmd, 'r');
+		}
+	}
+	
+	private static int getInt(CommandLine cmd, char option) throws ParseException
+	{
+		return (int) getLong(cmd, option);
+	}
+	
+	private static long getLong(CommandLine cmd, char option) throws ParseException
 	{
+		String value = cmd.getOptionValue(option);
 		try
 		{
-			return URLClassLoader.newInstance(new URL[]{installer.toURI().toURL()});
-		} catch (MalformedURLException e)
+			long ret = Long.parseLong(value.trim());
+			if (ret < 0L || ret > Integer.MAX_VALUE)
+				throw new NumberFormatException();
+			return ret;
+		} catch (NumberFormatException e)
 		{
-			throw new RuntimeException(e);
+			throw new ParseException("Invalid value for -" + option + ": " + value);
 		}
 	}
 	
@@ -0,0 +1,153 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+
+// Extracts a batch of installer entries at once. Inflating the binpatches and embedded jars is CPU bound, so the
+// entries are spread over a worker pool, largest first, and verified against their checksum while they are written.
+public class ArchiveExtractor
+{
+	public static int THREADS = Runtime.getRuntime().availableProcessors();
+	
+	private final InstallerArchive archive;
+	
+	// Entry -> every target it goes to, the same entry can be asked for by several data keys or libraries.
+	private final Map<String, List<Task>> tasks = new LinkedHashMap<>();
+	
+	public ArchiveExtractor(InstallerArchive archive)
+	{
+		this.archive = archive;
+	}
+	
+	public ArchiveExtractor add(String entry, File target, String sha1)
+	{
+		String name = (!entry.isEmpty() && entry.charAt(0) == '/') ? entry.substring(1) : entry;
+		this.tasks.computeIfAbsent(name, k -> new ArrayList<>()).add(new Task(target, sha1));
+		return this;
+	}
+	
+	public boolean isEmpty()
+	{
+		return this.tasks.isEmpty();
+	}
+	
+	// Returns the names of the entries that were extracted and verified, missing or corrupt entries are reported to
+	// the monitor and left out.
+	public Set<String> run(ProgressCallback monitor) throws InterruptedException
+	{
+		List<ZipEntry> entries = new ArrayList<>();
+		for (ZipEntry entry : this.archive.getEntries())
+		{
+			if (this.tasks.containsKey(entry.getName()))
+				entries.add(entry);
+		}
+		for (String name : this.tasks.keySet())
+		{
+			if (!this.archive.contains(name))
+				monitor.message("File not found in installer archive: " + name);
+		}
+		entries.sort(Comparator.comparingLong(ZipEntry::getCompressedSize).reversed());
+		Set<String> extracted = ConcurrentHashMap.newKeySet();
+		int threads = Math.max(1, Math.min(THREADS, entries.size()));
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r ->
+		{
+			Thread thread = new Thread(r, "installer-extract-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>();
+			for (ZipEntry entry : entries)
+			{
+				List<Task> targets = this.tasks.get(entry.getName());
+				futures.add(executor.submit(() ->
+				{
+					try
+					{
+						if (extract(entry, targets, monitor))
+							extracted.add(entry.getName());
+					} catch (Exception e)
+					{
+						e.printStackTrace();
+						monitor.message("Failed to extract /" + entry.getName() + ": " + e);
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				} catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+				}
+			}
+		} finally
+		{
+			executor.shutdownNow();
+		}
+		return extracted;
+	}
+	
+	// Inflates the entry once into the first target and copies it to the others. Every target that gives a SHA-1 has to
+	// agree with the others and the entry, nothing is written otherwise.
+	private boolean extract(ZipEntry entry, List<Task> targets, ProgressCallback monitor) throws IOException
+	{
+		String expected = null;
+		for (Task task : targets)
+		{
+			if (task.sha1 == null || task.sha1.isEmpty())
+				continue;
+			if (expected == null)
+			{
+				expected = task.sha1;
+			} else if (!expected.equals(task.sha1))
+			{
+				monitor.message("Extraction failed: Conflicting checksums for /" + entry.getName() + ": " + expected + " and " + task.sha1);
+				return false;
+			}
+		}
+		Task first = targets.get(0);
+		String sha1;
+		try (InputStream input = this.archive.getInputStream(entry))
+		{
+			sha1 = DownloadUtils.copyVerified(input, first.target, expected);
+		}
+		if (expected != null && !expected.equals(sha1))
+		{
+			monitor.message("Extraction failed: Checksum invalid for /" + entry.getName() + " Expected: " + expected + " Actual: " + sha1);
+			return false;
+		}
+		for (Task task : targets)
+		{
+			if (task == first || task.target.getAbsoluteFile().equals(first.target.getAbsoluteFile()))
+				continue;
+			DownloadUtils.copyAtomic(first.target.toPath(), task.target);
+			ChecksumCache.record(task.target, sha1);
+		}
+		return true;
+	}
+	
+	private static class Task
+	{
+		private final File target;
+		
+		private final String sha1;
+		
+		private Task(File target, String sha1)
+		{
+			this.target = target;
+			this.sha1 = sha1;
+		}
+	}
+}
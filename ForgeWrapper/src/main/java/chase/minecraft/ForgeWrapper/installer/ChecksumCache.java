@@ -0,0 +1,235 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Persistent SHA-1 cache for every file below a libraries root, stored in <root>/.checksums.
+// An entry is only trusted while the file's size, modification time and file key (inode) are unchanged.
+public class ChecksumCache implements AutoCloseable
+{
+	public static final String FILE_NAME = ".checksums";
+	
+	private static final Map<Path, ChecksumCache> OPEN = new ConcurrentHashMap<>();
+	
+	private final Path root;
+	
+	private final Path store;
+	
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	
+	private volatile boolean dirty = false;
+	
+	private int references = 0;
+	
+	private ChecksumCache(Path root)
+	{
+		this.root = root;
+		this.store = root.resolve(FILE_NAME);
+		load();
+	}
+	
+	public static ChecksumCache open(File root)
+	{
+		Path path = root.toPath().toAbsolutePath().normalize();
+		return OPEN.compute(path, (k, v) ->
+		{
+			ChecksumCache cache = (v == null) ? new ChecksumCache(k) : v;
+			cache.references++;
+			return cache;
+		});
+	}
+	
+	// Returns the cache responsible for the file, or null if it isn't below an open libraries root.
+	public static ChecksumCache find(File file)
+	{
+		if (OPEN.isEmpty())
+			return null;
+		Path path = file.toPath().toAbsolutePath().normalize();
+		for (Map.Entry<Path, ChecksumCache> e : OPEN.entrySet())
+		{
+			if (path.startsWith(e.getKey()))
+				return e.getValue();
+		}
+		return null;
+	}
+	
+	public static String getSha1(File file) throws IOException
+	{
+		ChecksumCache cache = find(file);
+		return (cache == null) ? HashFunction.SHA1.hash(file.toPath()) : cache.get(file.toPath());
+	}
+	
+	// Records a hash that is already known, e.g. because the file was just written through a digest.
+	public static void record(File file, String sha1)
+	{
+		ChecksumCache cache = find(file);
+		if (cache != null)
+			cache.put(file.toPath(), sha1);
+	}
+	
+	public String get(Path file) throws IOException
+	{
+		String key = file.toAbsolutePath().normalize().toString();
+		BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		Entry entry = this.entries.get(key);
+		if (entry != null && entry.matches(attrs))
+			return entry.sha1;
+		String sha1 = HashFunction.SHA1.hash(file);
+		this.entries.put(key, new Entry(attrs, sha1));
+		this.dirty = true;
+		return sha1;
+	}
+	
+	public void put(Path file, String sha1)
+	{
+		String key = file.toAbsolutePath().normalize().toString();
+		try
+		{
+			this.entries.put(key, new Entry(Files.readAttributes(file, BasicFileAttributes.class), sha1));
+		} catch (IOException e)
+		{
+			this.entries.remove(key);
+		}
+		this.dirty = true;
+	}
+	
+	public void invalidate(Path file)
+	{
+		if (this.entries.remove(file.toAbsolutePath().normalize().toString()) != null)
+			this.dirty = true;
+	}
+	
+	public void clear()
+	{
+		this.entries.clear();
+		this.dirty = true;
+	}
+	
+	private void load()
+	{
+		if (!Files.isRegularFile(this.store))
+			return;
+		try (BufferedReader reader = Files.newBufferedReader(this.store, StandardCharsets.UTF_8))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] pts = line.split("\t", 5);
+				if (pts.length != 5)
+					continue;
+				try
+				{
+					this.entries.put(pts[4], new Entry(Long.parseLong(pts[1]), Long.parseLong(pts[2]), pts[3], pts[0]));
+				} catch (NumberFormatException ignored)
+				{
+				}
+			}
+		} catch (IOException e)
+		{
+			System.out.println("Failed to read checksum cache " + this.store + ": " + e.getMessage());
+			this.entries.clear();
+		}
+	}
+	
+	public synchronized void save()
+	{
+		if (!this.dirty)
+			return;
+		try
+		{
+			Files.createDirectories(this.root);
+			Path temp = Files.createTempFile(this.root, FILE_NAME, ".tmp");
+			try
+			{
+				try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8))
+				{
+					for (Map.Entry<String, Entry> e : this.entries.entrySet())
+					{
+						Entry entry = e.getValue();
+						// Files that were deleted, moved or changed since are dropped so the cache doesn't grow forever.
+						if (!entry.isCurrent(Paths.get(e.getKey())))
+						{
+							this.entries.remove(e.getKey(), entry);
+							continue;
+						}
+						writer.write(entry.sha1 + '\t' + entry.size + '\t' + entry.modified + '\t' + entry.fileKey + '\t' + e.getKey());
+						writer.newLine();
+					}
+				}
+				try
+				{
+					Files.move(temp, this.store, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e)
+				{
+					Files.move(temp, this.store, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally
+			{
+				Files.deleteIfExists(temp);
+			}
+			this.dirty = false;
+		} catch (IOException e)
+		{
+			System.out.println("Failed to write checksum cache " + this.store + ": " + e.getMessage());
+		}
+	}
+	
+	public void close()
+	{
+		save();
+		OPEN.computeIfPresent(this.root, (k, v) -> (v == this && --this.references <= 0) ? null : v);
+	}
+	
+	private static class Entry
+	{
+		private final long size;
+		
+		private final long modified;
+		
+		private final String fileKey;
+		
+		private final String sha1;
+		
+		private Entry(long size, long modified, String fileKey, String sha1)
+		{
+			this.size = size;
+			this.modified = modified;
+			this.fileKey = fileKey;
+			this.sha1 = sha1;
+		}
+		
+		private Entry(BasicFileAttributes attrs, String sha1)
+		{
+			this(attrs.size(), attrs.lastModifiedTime().toMillis(), getFileKey(attrs), sha1);
+		}
+		
+		private boolean matches(BasicFileAttributes attrs)
+		{
+			return this.size == attrs.size() && this.modified == attrs.lastModifiedTime().toMillis() && this.fileKey.equals(getFileKey(attrs));
+		}
+		
+		private boolean isCurrent(Path file)
+		{
+			try
+			{
+				return matches(Files.readAttributes(file, BasicFileAttributes.class));
+			} catch (IOException e)
+			{
+				return false;
+			}
+		}
+		
+		private static String getFileKey(BasicFileAttributes attrs)
+		{
+			Object key = attrs.fileKey();
+			return (key == null) ? "-" : key.toString().replace('\t', ' ');
+		}
+	}
+}
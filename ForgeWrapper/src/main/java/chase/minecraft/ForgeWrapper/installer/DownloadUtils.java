@@ -1,19 +1,20 @@
 package chase.minecraft.ForgeWrapper.installer;
 
-import chase.minecraft.ForgeWrapper.Main;
 import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
 import chase.minecraft.ForgeWrapper.installer.json.*;
 
-import javax.net.ssl.SSLHandshakeException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.*;
-import java.nio.file.CopyOption;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -21,7 +22,9 @@ public class DownloadUtils
 {
 	public static boolean OFFLINE_MODE = false;
 	
-	public static boolean downloadLibrary(ProgressCallback monitor, Mirror mirror, Version.Library library, File root, Predicate<String> optional, List<Artifact> grabbed, List<File> additionalLibraryDirs)
+	static final long PROGRESS_INTERVAL = 1024L * 1024L;
+	
+	public static boolean downloadLibrary(ProgressCallback monitor, InstallerArchive archive, Mirror mirror, Version.Library library, File root, Predicate<String> optional, List<Artifact> grabbed, List<File> additionalLibraryDirs)
 	{
 		Artifact artifact = library.getName();
 		File target = artifact.getLocalPath(root);
@@ -33,10 +36,10 @@ public class DownloadUtils
 		}
 		if (!optional.test(library.getName().getDescriptor()))
 		{
-			monitor.message(String.format("Considering library %s: Not Downloading {Disabled}", new Object[]{artifact.getDescriptor()}));
+			monitor.message("Considering library " + artifact.getDescriptor() + ": Not Downloading {Disabled}");
 			return true;
 		}
-		monitor.message(String.format("Considering library %s", new Object[]{artifact.getDescriptor()}));
+		monitor.message("Considering library " + artifact.getDescriptor());
 		if (target.exists())
 			if (download.getSha1() != null)
 			{
@@ -60,29 +63,46 @@ public class DownloadUtils
 				return true;
 			}
 		target.getParentFile().mkdirs();
-		try (InputStream input = Main.getInstallerClassLoader().getResourceAsStream("maven/" + artifact.getPath()))
+		LibraryStore store = LibraryStore.get();
+		if (store == null || download.getSha1() == null)
+			return acquireLibrary(monitor, archive, mirror, artifact, download, target, grabbed, additionalLibraryDirs);
+		store.lock(download.getSha1());
+		try
+		{
+			return acquireLibrary(monitor, archive, mirror, artifact, download, target, grabbed, additionalLibraryDirs);
+		} finally
+		{
+			store.unlock(download.getSha1());
+		}
+	}
+	
+	private static boolean acquireLibrary(ProgressCallback monitor, InstallerArchive archive, Mirror mirror, Artifact artifact, Version.LibraryDownload download, File target, List<Artifact> grabbed, List<File> additionalLibraryDirs)
+	{
+		LibraryStore store = LibraryStore.get();
+		if (store != null && download.getSha1() != null && store.materialize(download.getSha1(), target))
+		{
+			monitor.message("  Linked from shared store " + store.getRoot());
+			grabbed.add(artifact);
+			return true;
+		}
+		try (InputStream input = archive.getInputStream("maven/" + artifact.getPath()))
 		{
 			if (input != null)
 			{
 				monitor.message("  Extracting library from /maven/" + artifact.getPath());
-				Files.copy(input, target.toPath(), new CopyOption[]{StandardCopyOption.REPLACE_EXISTING});
+				String sha1 = copyVerified(input, target, download.getSha1());
 				if (download.getSha1() != null)
 				{
-					String sha1 = getSha1(target);
 					if (download.getSha1().equals(sha1))
 					{
 						monitor.message("    Extraction completed: Checksum validated.");
+						share(target, sha1);
 						grabbed.add(artifact);
 						return true;
 					}
-					monitor.message("    Extraction failed: Checksum invalid, deleting file:");
+					monitor.message("    Extraction failed: Checksum invalid, discarding file:");
 					monitor.message("      Expected: " + download.getSha1());
 					monitor.message("      Actual:   " + sha1);
-					if (!target.delete())
-					{
-						monitor.stage("      Failed to delete file, aborting.");
-						return false;
-					}
 					return false;
 				}
 				monitor.message("    Extraction completed: No checksum, Assuming valid.");
@@ -102,7 +122,7 @@ public class DownloadUtils
 				File inLibDir = new File(libDir, artifact.getPath());
 				if (inLibDir.exists())
 				{
-					monitor.message(String.format("  Found artifact in local folder %s", new Object[]{libDir.toString()}));
+					monitor.message("  Found artifact in local folder " + libDir);
 					String sha1 = getSha1(inLibDir);
 					if (providedSha1.equals(sha1))
 					{
@@ -116,12 +136,13 @@ public class DownloadUtils
 					{
 						Files.copy(inLibDir.toPath(), target.toPath(), new CopyOption[0]);
 						monitor.message("    Successfully copied local file");
+						share(target, providedSha1);
 						grabbed.add(artifact);
 						return true;
 					} catch (IOException e)
 					{
 						e.printStackTrace();
-						monitor.message(String.format("    Failed to copy from local folder: %s", new Object[]{e.toString()}));
+						monitor.message("    Failed to copy from local folder: " + e);
 						if (target.exists() &&
 								!target.delete())
 						{
@@ -140,53 +161,100 @@ public class DownloadUtils
 		}
 		if (download(monitor, mirror, download, target))
 		{
+			if (download.getSha1() != null)
+				share(target, download.getSha1());
 			grabbed.add(artifact);
 			return true;
 		}
 		return false;
 	}
 	
+	public static void share(File target, String sha1)
+	{
+		LibraryStore store = LibraryStore.get();
+		if (store != null)
+			store.add(target, sha1);
+	}
+	
 	public static boolean download(ProgressCallback monitor, Mirror mirror, Version.LibraryDownload download, File target)
 	{
 		String url = download.getUrl();
 		if (url.startsWith("http") && !url.startsWith("https://libraries.minecraft.net/") && mirror != null && url.endsWith(download.getPath()))
-			if (download(monitor, mirror, (Version.Download) download, target, mirror.getUrl() + download.getPath()))
-				return true;
-		return download(monitor, mirror, (Version.Download) download, target, url);
+		{
+			for (Mirror candidate : MirrorSelector.getCandidates(mirror))
+			{
+				if (download(monitor, candidate, (Version.Download) download, target, candidate.getUrl() + download.getPath(), download.getPath(), MirrorSelector.FIRST_BYTE_TIMEOUT))
+				{
+					MirrorSelector.reportSuccess(candidate);
+					return true;
+				}
+				MirrorSelector.reportFailure(candidate);
+			}
+		}
+		return download(monitor, mirror, (Version.Download) download, target, url, download.getPath(), null);
 	}
 	
 	public static boolean download(ProgressCallback monitor, Mirror mirror, Version.Download download, File target)
 	{
-		return download(monitor, mirror, download, target, download.getUrl());
+		String name = target.getName();
+		monitor.artifact(name, ProgressCallback.ArtifactState.STARTED, -1L);
+		boolean success;
+		LibraryStore store = LibraryStore.get();
+		if (store == null || download.getSha1() == null)
+		{
+			success = download(monitor, mirror, download, target, download.getUrl(), name, null);
+		} else
+		{
+			// The vanilla jars are the same for every instance of a version, link them from the shared store.
+			store.lock(download.getSha1());
+			try
+			{
+				success = store.materialize(download.getSha1(), target);
+				if (success)
+				{
+					monitor.message("  Linked from shared store: " + name);
+				} else
+				{
+					success = download(monitor, mirror, download, target, download.getUrl(), name, null);
+					if (success)
+						share(target, download.getSha1());
+				}
+			} finally
+			{
+				store.unlock(download.getSha1());
+			}
+		}
+		monitor.artifact(name, success ? ProgressCallback.ArtifactState.VERIFIED : ProgressCallback.ArtifactState.FAILED, success ? target.length() : -1L);
+		return success;
 	}
 	
-	private static boolean download(ProgressCallback monitor, Mirror mirror, Version.Download download, File target, String url)
+	private static boolean download(ProgressCallback monitor, Mirror mirror, Version.Download download, File target, String url, String artifact, Duration timeout)
 	{
 		monitor.message("  Downloading library from " + url);
 		try
 		{
-			URLConnection connection = getConnection(url);
-			if (connection != null)
+			LongConsumer progress = bytes -> monitor.artifact(artifact, ProgressCallback.ArtifactState.BYTES, bytes);
+			String sha1 = null;
+			if (SegmentedDownload.accepts(download.getSize()))
+				sha1 = SegmentedDownload.fetch(url, target, download.getSha1(), download.getSize(), progress, timeout);
+			if (sha1 == null)
+				sha1 = ResumableDownload.fetch(url, target, download.getSha1(), progress, timeout);
+			if (sha1 != null)
 			{
-				Files.copy(connection.getInputStream(), target.toPath(), new CopyOption[]{StandardCopyOption.REPLACE_EXISTING});
 				if (download.getSha1() != null)
 				{
-					String sha1 = getSha1(target);
 					if (download.getSha1().equals(sha1))
 					{
 						monitor.message("    Download completed: Checksum validated.");
 						return true;
 					}
-					monitor.message("    Download failed: Checksum invalid, deleting file:");
+					monitor.message("    Download failed: Checksum invalid, discarding file:");
 					monitor.message("      Expected: " + download.getSha1());
 					monitor.message("      Actual:   " + sha1);
-					if (!target.delete())
-					{
-						monitor.stage("      Failed to delete file, aborting.");
-						return false;
-					}
+					return false;
 				}
 				monitor.message("    Download completed: No checksum, Assuming valid.");
+				return true;
 			}
 		} catch (IOException e)
 		{
@@ -199,7 +267,7 @@ public class DownloadUtils
 	{
 		try
 		{
-			return HashFunction.SHA1.hash(Files.readAllBytes(target.toPath())).toString();
+			return ChecksumCache.getSha1(target);
 		} catch (IOException e)
 		{
 			e.printStackTrace();
@@ -207,71 +275,84 @@ public class DownloadUtils
 		}
 	}
 	
-	private static boolean checksumValid(File target, String checksum)
+	// Streams the input into a temporary file next to the target while hashing it. The temporary file is only moved
+	// over the target when no checksum is expected or the checksum matches, otherwise it is discarded.
+	// Returns the SHA-1 of the streamed data.
+	static String copyVerified(InputStream input, File target, String checksum) throws IOException
 	{
-		if (checksum == null || checksum.isEmpty())
-			return true;
-		String sha1 = getSha1(target);
-		return (sha1 != null && sha1.equals(checksum));
+		return copyVerified(input, target, checksum, null);
 	}
 	
-	private static URLConnection getConnection(String address)
+	// Progress, when given, is told the number of bytes copied so far about every megabyte and once at the end.
+	static String copyVerified(InputStream input, File target, String checksum, LongConsumer progress) throws IOException
 	{
-		if (OFFLINE_MODE)
-		{
-			System.out.println("Offline Mode: Not downloading: " + address);
-			return null;
-		}
-		URL url = null;
+		File parent = target.getAbsoluteFile().getParentFile();
+		if (!parent.exists())
+			parent.mkdirs();
+		Path temp = Files.createTempFile(parent.toPath(), target.getName() + ".", ".tmp");
 		try
 		{
-			url = new URL(address);
-		} catch (MalformedURLException e)
-		{
-			e.printStackTrace();
-			return null;
-		}
-		try
-		{
-			int MAX = 3;
-			URLConnection connection = null;
-			for (int x = 0; x < MAX; )
+			MessageDigest digest = HashFunction.SHA1.get();
+			RateLimiter disk = RateLimiter.disk();
+			try (OutputStream output = Files.newOutputStream(temp))
 			{
-				connection = url.openConnection();
-				connection.setConnectTimeout(5000);
-				connection.setReadTimeout(5000);
-				if (connection instanceof HttpURLConnection)
+				byte[] buffer = new byte[65536];
+				int len;
+				long total = 0L;
+				long report = PROGRESS_INTERVAL;
+				while ((len = input.read(buffer)) != -1)
 				{
-					HttpURLConnection hcon = (HttpURLConnection) connection;
-					hcon.setInstanceFollowRedirects(false);
-					int res = hcon.getResponseCode();
-					if (res == 301 || res == 302)
+					digest.update(buffer, 0, len);
+					output.write(buffer, 0, len);
+					RateLimiter.acquire(disk, len);
+					total += len;
+					if (progress != null && total >= report)
 					{
-						String location = hcon.getHeaderField("Location");
-						hcon.disconnect();
-						if (x == MAX - 1)
-						{
-							System.out.println("Invalid number of redirects: " + location);
-							return null;
-						}
-						System.out.println("Following redirect: " + location);
-						url = new URL(url, location);
+						progress.accept(total);
+						report = total + PROGRESS_INTERVAL;
 					}
-					x++;
 				}
+				if (progress != null)
+					progress.accept(total);
+			}
+			String sha1 = HashFunction.SHA1.finish(digest);
+			if (checksum == null || checksum.isEmpty() || checksum.equals(sha1))
+			{
+				commit(temp, target.toPath());
+				ChecksumCache.record(target, sha1);
 			}
-			return connection;
-		} catch (SSLHandshakeException e)
+			return sha1;
+		} finally
 		{
-			System.out.println("Failed to establish connection to " + address);
-			String host = url.getHost();
-			System.out.println(" Host: " + host + " [" + (String) getIps(host).stream().collect(Collectors.joining(", ")) + "]");
-			e.printStackTrace();
-			return null;
-		} catch (IOException e)
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	// Copies through a temp file next to the target, so the target is either the old file or the whole new one.
+	static void copyAtomic(Path source, File target) throws IOException
+	{
+		File parent = target.getAbsoluteFile().getParentFile();
+		if (!parent.exists())
+			parent.mkdirs();
+		Path temp = Files.createTempFile(parent.toPath(), target.getName() + ".", ".tmp");
+		try
 		{
-			e.printStackTrace();
-			return null;
+			Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+			commit(temp, target.toPath());
+		} finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	private static void commit(Path temp, Path target) throws IOException
+	{
+		try
+		{
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 	
@@ -290,14 +371,10 @@ public class DownloadUtils
 	
 	public static Mirror[] downloadMirrors(String url)
 	{
-		try
+		try (InputStream stream = HttpTransport.open(url))
 		{
-			URLConnection connection = getConnection(url);
-			if (connection != null)
-				try (InputStream stream = connection.getInputStream())
-				{
-					return Util.loadMirrorList(stream);
-				}
+			if (stream != null)
+				return Util.loadMirrorList(stream);
 		} catch (Throwable e)
 		{
 			e.printStackTrace();
@@ -305,31 +382,64 @@ public class DownloadUtils
 		return null;
 	}
 	
-	public static Manifest downloadManifest()
+	// How long the version manifest is trusted before it is revalidated, it is cached on disk (see MetadataCache) and
+	// kept parsed while the cached copy doesn't change.
+	public static long MANIFEST_TTL = 60L * 60L * 1000L;
+	
+	private static final String MANIFEST_URL = "https://piston-meta.mojang.com/mc/game/version_manifest_v2.json";
+	
+	private static Manifest manifest = null;
+	
+	private static FileTime manifestTime = null;
+	
+	public static synchronized Manifest downloadManifest()
 	{
+		Path cached = MetadataCache.fetch(MANIFEST_URL, null, MANIFEST_TTL);
+		if (cached == null)
+			return manifest;
 		try
 		{
-			URLConnection connection = getConnection("https://launchermeta.mojang.com/mc/game/version_manifest.json");
-			if (connection != null)
-				try (InputStream stream = connection.getInputStream())
-				{
-					return Util.loadManifest(stream);
-				}
+			FileTime modified = Files.getLastModifiedTime(cached);
+			if (manifest != null && modified.equals(manifestTime))
+				return manifest;
+			try (InputStream stream = Files.newInputStream(cached))
+			{
+				manifest = Util.loadManifest(stream);
+				manifestTime = modified;
+				return manifest;
+			}
 		} catch (IOException e)
 		{
 			e.printStackTrace();
 		}
-		return null;
+		return manifest;
+	}
+	
+	// Copies launcher metadata with a known checksum, like a version json, out of the metadata cache.
+	public static boolean downloadMetadata(File target, String url, String sha1)
+	{
+		if (sha1 == null)
+			return downloadFile(target, url);
+		Path cached = MetadataCache.fetch(url, sha1, MANIFEST_TTL);
+		if (cached == null)
+			return false;
+		try (InputStream stream = Files.newInputStream(cached))
+		{
+			return sha1.equals(copyVerified(stream, target, sha1));
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return false;
+		}
 	}
 	
 	public static boolean downloadFile(File target, String url)
 	{
-		try
+		try (InputStream stream = HttpTransport.open(url))
 		{
-			URLConnection connection = getConnection(url);
-			if (connection != null)
+			if (stream != null)
 			{
-				Files.copy(connection.getInputStream(), target.toPath(), new CopyOption[]{StandardCopyOption.REPLACE_EXISTING});
+				copyVerified(stream, target, null);
 				return true;
 			}
 		} catch (IOException e)
@@ -339,20 +449,17 @@ public class DownloadUtils
 		return false;
 	}
 	
-	public static boolean extractFile(Artifact art, File target, String checksum)
+	public static boolean extractFile(InstallerArchive archive, Artifact art, File target, String checksum)
 	{
-		InputStream input = Main.getInstallerClassLoader().getResourceAsStream("maven/" + art.getPath());
-		if (input == null)
+		try (InputStream input = archive.getInputStream("maven/" + art.getPath()))
 		{
-			System.out.println("File not found in installer archive: /maven/" + art.getPath());
-			return false;
-		}
-		if (!target.getParentFile().exists())
-			target.getParentFile().mkdirs();
-		try
-		{
-			Files.copy(input, target.toPath(), new CopyOption[]{StandardCopyOption.REPLACE_EXISTING});
-			return checksumValid(target, checksum);
+			if (input == null)
+			{
+				System.out.println("File not found in installer archive: /maven/" + art.getPath());
+				return false;
+			}
+			String sha1 = copyVerified(input, target, checksum);
+			return (checksum == null || checksum.isEmpty() || checksum.equals(sha1));
 		} catch (Exception e)
 		{
 			e.printStackTrace();
@@ -360,21 +467,17 @@ public class DownloadUtils
 		}
 	}
 	
-	public static boolean extractFile(String name, File target)
+	public static boolean extractFile(InstallerArchive archive, String name, File target)
 	{
-//		String path = (name.charAt(0) == '/') ? name : "/" + name;
 		String path = (name.charAt(0) == '/') ? name.substring(1) : name;
-		InputStream input = Main.getInstallerClassLoader().getResourceAsStream(path);
-		if (input == null)
+		try (InputStream input = archive.getInputStream(path))
 		{
-			System.out.println("File not found in installer archive: " + path);
-			return false;
-		}
-		if (!target.getParentFile().exists())
-			target.getParentFile().mkdirs();
-		try
-		{
-			Files.copy(input, target.toPath(), new CopyOption[]{StandardCopyOption.REPLACE_EXISTING});
+			if (input == null)
+			{
+				System.out.println("File not found in installer archive: " + path);
+				return false;
+			}
+			copyVerified(input, target, null);
 			return true;
 		} catch (Exception e)
 		{
@@ -16,7 +16,6 @@ import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 
-import chase.minecraft.ForgeWrapper.Main;
 import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
 
 class FixSSL {
@@ -34,7 +33,7 @@ class FixSSL {
     return true;
   }
   
-  static void fixup(ProgressCallback callback) {
+  static void fixup(ProgressCallback callback, InstallerArchive archive) {
     if (hasJavaForDownload(callback))
       return; 
     try {
@@ -49,7 +48,7 @@ class FixSSL {
               } 
             }));
       KeyStore leKS = KeyStore.getInstance(KeyStore.getDefaultType());
-      InputStream leKSFile = Main.getInstallerClassLoader().getResourceAsStream("lekeystore.jks");
+      InputStream leKSFile = archive.getInputStream("lekeystore.jks");
       leKS.load(leKSFile, "supersecretpassword".toCharArray());
       Map<String, Certificate> leTrustStore = (Map<String, Certificate>)Collections.<String>list(leKS.aliases()).stream().collect(Collectors.toMap(a -> a, alias -> {
               try {
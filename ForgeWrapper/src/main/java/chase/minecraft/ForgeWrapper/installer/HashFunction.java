@@ -1,6 +1,11 @@
 package chase.minecraft.ForgeWrapper.installer;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
@@ -10,6 +15,10 @@ public enum HashFunction {
   SHA1("SHA-1", 40),
   SHA256("SHA-256", 64);
   
+  // Direct, so the channel reads straight into it. Files aren't memory mapped, a mapping stays until it is garbage
+  // collected and on Windows keeps the file from being deleted or replaced right after hashing it.
+  private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(256 * 1024));
+  
   private String algo;
   
   private String pad;
@@ -31,6 +40,24 @@ public enum HashFunction {
     return pad((new BigInteger(1, get().digest(data))).toString(16));
   }
   
+  public String hash(Path file) throws IOException {
+    MessageDigest digest = get();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = BUFFER.get();
+      buffer.clear();
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      } 
+    } 
+    return finish(digest);
+  }
+  
+  public String finish(MessageDigest digest) {
+    return pad((new BigInteger(1, digest.digest())).toString(16));
+  }
+  
   public String pad(String hash) {
     return (this.pad + hash).substring(hash.length());
   }
@@ -0,0 +1,236 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// One client is shared by every download so connections (and TLS sessions) to the same host are reused.
+// The request timeout only covers the wait for the response headers, a body read that gets nothing for READ_TIMEOUT
+// is ended by a watchdog closing the stream, so the read fails with a SocketTimeoutException like URLConnection's did.
+public class HttpTransport
+{
+	public static Duration READ_TIMEOUT = Duration.ofSeconds(5);
+	
+	private static final HttpClient CLIENT = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+	
+	private static final HttpResponse.BodyHandler<InputStream> BODY = info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), IdleTimeoutStream::new);
+	
+	private static final Set<IdleTimeoutStream> READING = ConcurrentHashMap.newKeySet();
+	
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r ->
+	{
+		Thread thread = new Thread(r, "http-read-watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	static
+	{
+		WATCHDOG.scheduleWithFixedDelay(HttpTransport::checkReads, 250L, 250L, TimeUnit.MILLISECONDS);
+	}
+	
+	public static HttpClient getClient()
+	{
+		return CLIENT;
+	}
+	
+	public static HttpRequest.Builder request(String address)
+	{
+		return HttpRequest.newBuilder(URI.create(address))
+				.timeout(Duration.ofSeconds(30))
+				.header("User-Agent", "ForgeWrapper")
+				.GET();
+	}
+	
+	public static HttpResponse<InputStream> send(HttpRequest request)
+	{
+		return send(request, false);
+	}
+	
+	// A conditional request can accept 304 Not Modified, the caller then uses its cached copy.
+	public static HttpResponse<InputStream> send(HttpRequest request, boolean notModified)
+	{
+		if (DownloadUtils.OFFLINE_MODE)
+		{
+			System.out.println("Offline Mode: Not downloading: " + request.uri());
+			return null;
+		}
+		try
+		{
+			HttpResponse<InputStream> response = CLIENT.send(request, BODY);
+			int code = response.statusCode();
+			if ((code < 200 || code >= 300) && !(notModified && code == 304))
+			{
+				System.out.println("Failed to download " + request.uri() + ": HTTP " + code);
+				response.body().close();
+				return null;
+			}
+			return response;
+		} catch (SSLHandshakeException e)
+		{
+			System.out.println("Failed to establish connection to " + request.uri());
+			String host = request.uri().getHost();
+			List<String> ips = DownloadUtils.getIps(host);
+			System.out.println(" Host: " + host + " [" + ((ips == null) ? "" : String.join(", ", ips)) + "]");
+			e.printStackTrace();
+			return null;
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	// Returns the response whatever its status, for callers that handle the status themselves, and throws when the
+	// server can't be reached. The caller closes the body.
+	public static HttpResponse<InputStream> exchange(HttpRequest request) throws IOException
+	{
+		try
+		{
+			return CLIENT.send(request, BODY);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while connecting to " + request.uri());
+		}
+	}
+	
+	public static InputStream open(String address)
+	{
+		HttpRequest request;
+		try
+		{
+			request = request(address).build();
+		} catch (IllegalArgumentException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		HttpResponse<InputStream> response = send(request);
+		return (response == null) ? null : RateLimiter.throttle(response.body(), RateLimiter.network());
+	}
+	
+	private static void checkReads()
+	{
+		long now = System.nanoTime();
+		long limit = READ_TIMEOUT.toNanos();
+		for (IdleTimeoutStream stream : READING)
+		{
+			long started = stream.started;
+			if (started != 0L && now - started > limit)
+				stream.expire();
+		}
+	}
+	
+	// Only registered with the watchdog while a read is blocked.
+	private static class IdleTimeoutStream extends FilterInputStream
+	{
+		private volatile long started = 0L;
+		
+		private volatile boolean expired = false;
+		
+		private IdleTimeoutStream(InputStream input)
+		{
+			super(input);
+		}
+		
+		public int read() throws IOException
+		{
+			begin();
+			try
+			{
+				int ret = super.read();
+				if (this.expired)
+					throw new SocketTimeoutException("Read timed out after " + READ_TIMEOUT.toMillis() + "ms");
+				return ret;
+			} catch (IOException e)
+			{
+				throw timeout(e);
+			} finally
+			{
+				end();
+			}
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			begin();
+			try
+			{
+				int ret = super.read(b, off, len);
+				// Closing may end the blocked read as end of stream instead of an error.
+				if (this.expired)
+					throw new SocketTimeoutException("Read timed out after " + READ_TIMEOUT.toMillis() + "ms");
+				return ret;
+			} catch (IOException e)
+			{
+				throw timeout(e);
+			} finally
+			{
+				end();
+			}
+		}
+		
+		public void close() throws IOException
+		{
+			READING.remove(this);
+			super.close();
+		}
+		
+		private void begin() throws IOException
+		{
+			if (this.expired)
+				throw new SocketTimeoutException("Read timed out");
+			this.started = System.nanoTime();
+			READING.add(this);
+		}
+		
+		private void end()
+		{
+			this.started = 0L;
+			READING.remove(this);
+		}
+		
+		private IOException timeout(IOException e)
+		{
+			if (!this.expired || e instanceof SocketTimeoutException)
+				return e;
+			SocketTimeoutException ret = new SocketTimeoutException("Read timed out after " + READ_TIMEOUT.toMillis() + "ms");
+			ret.initCause(e);
+			return ret;
+		}
+		
+		private void expire()
+		{
+			this.expired = true;
+			try
+			{
+				this.in.close();
+			} catch (IOException ignored)
+			{
+			}
+		}
+	}
+}
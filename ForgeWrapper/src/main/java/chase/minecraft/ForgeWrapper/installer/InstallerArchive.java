@@ -0,0 +1,91 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// The forge installer jar, opened once per install. The central directory is only parsed when opening and every
+// lookup goes through the entry index. ZipFile is safe to read from several threads at once.
+public class InstallerArchive implements Closeable
+{
+	private final File file;
+	
+	private final ZipFile zip;
+	
+	private final Map<String, ZipEntry> index;
+	
+	private InstallerArchive(File file) throws IOException
+	{
+		this.file = file;
+		this.zip = new ZipFile(file);
+		Map<String, ZipEntry> index = new LinkedHashMap<>();
+		Enumeration<? extends ZipEntry> entries = this.zip.entries();
+		while (entries.hasMoreElements())
+		{
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory())
+				index.put(entry.getName(), entry);
+		}
+		this.index = Collections.unmodifiableMap(index);
+	}
+	
+	public static InstallerArchive open(File file) throws IOException
+	{
+		return new InstallerArchive(file);
+	}
+	
+	public File getFile()
+	{
+		return this.file;
+	}
+	
+	public ZipEntry getEntry(String name)
+	{
+		return this.index.get(normalize(name));
+	}
+	
+	public boolean contains(String name)
+	{
+		return getEntry(name) != null;
+	}
+	
+	public Collection<ZipEntry> getEntries()
+	{
+		return this.index.values();
+	}
+	
+	// Returns null if the entry doesn't exist.
+	public InputStream getInputStream(String name) throws IOException
+	{
+		ZipEntry entry = getEntry(name);
+		return (entry == null) ? null : this.zip.getInputStream(entry);
+	}
+	
+	public InputStream getInputStream(ZipEntry entry) throws IOException
+	{
+		return this.zip.getInputStream(entry);
+	}
+	
+	// Returns null if the entry doesn't exist.
+	public byte[] readAllBytes(String name) throws IOException
+	{
+		try (InputStream stream = getInputStream(name))
+		{
+			return (stream == null) ? null : stream.readAllBytes();
+		}
+	}
+	
+	public void close() throws IOException
+	{
+		this.zip.close();
+	}
+	
+	private static String normalize(String name)
+	{
+		return (!name.isEmpty() && name.charAt(0) == '/') ? name.substring(1) : name;
+	}
+}
@@ -0,0 +1,150 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import chase.minecraft.ForgeWrapper.installer.actions.BufferedProgress;
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
+import chase.minecraft.ForgeWrapper.installer.json.Artifact;
+import chase.minecraft.ForgeWrapper.installer.json.Mirror;
+import chase.minecraft.ForgeWrapper.installer.json.Version;
+
+import java.io.File;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class LibraryDownloader implements AutoCloseable
+{
+	public static int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	
+	public static int PER_HOST = 6;
+	
+	private final ProgressCallback monitor;
+	
+	private final InstallerArchive archive;
+	
+	private final Mirror mirror;
+	
+	private final File root;
+	
+	private final Predicate<String> optional;
+	
+	private final List<Artifact> grabbed;
+	
+	private final List<File> additionalLibraryDirs;
+	
+	private final ExecutorService executor;
+	
+	// Shared by every install running in this process.
+	private static final Map<String, Semaphore> HOSTS = new ConcurrentHashMap<>();
+	
+	private final Map<Artifact, CompletableFuture<Boolean>> inflight = new ConcurrentHashMap<>();
+	
+	public LibraryDownloader(ProgressCallback monitor, InstallerArchive archive, Mirror mirror, File root, Predicate<String> optional, List<Artifact> grabbed, List<File> additionalLibraryDirs)
+	{
+		this.monitor = monitor;
+		this.archive = archive;
+		this.mirror = mirror;
+		this.root = root;
+		this.optional = optional;
+		this.grabbed = Collections.synchronizedList(grabbed);
+		this.additionalLibraryDirs = additionalLibraryDirs;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(THREADS, r ->
+		{
+			Thread thread = new Thread(r, "library-download-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	// Largest libraries are started first, the returned futures are in the same order as the input.
+	public List<CompletableFuture<Boolean>> downloadAll(List<Version.Library> libraries, Runnable onComplete)
+	{
+		List<Version.Library> ordered = new ArrayList<>(libraries);
+		ordered.sort(Comparator.comparingLong(LibraryDownloader::getSize).reversed());
+		Map<Version.Library, CompletableFuture<Boolean>> results = new IdentityHashMap<>();
+		for (Version.Library library : ordered)
+		{
+			CompletableFuture<Boolean> future = submit(library);
+			future.whenComplete((r, e) -> onComplete.run());
+			results.put(library, future);
+		}
+		List<CompletableFuture<Boolean>> ret = new ArrayList<>(libraries.size());
+		for (Version.Library library : libraries)
+			ret.add(results.get(library));
+		return ret;
+	}
+	
+	private CompletableFuture<Boolean> submit(Version.Library library)
+	{
+		// The same artifact can be listed by both the version json and the install profile, only fetch it once.
+		Artifact key = library.getName();
+		CompletableFuture<Boolean> shared = this.inflight.get(key);
+		if (shared != null)
+			return shared.thenApply(r -> r);
+		CompletableFuture<Boolean> future = new CompletableFuture<>();
+		shared = this.inflight.putIfAbsent(key, future);
+		if (shared != null)
+			return shared.thenApply(r -> r);
+		this.monitor.artifact(library.getName().getPath(), ProgressCallback.ArtifactState.QUEUED, getSize(library));
+		this.executor.execute(() ->
+		{
+			try
+			{
+				future.complete(download(library));
+			} catch (Throwable e)
+			{
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	
+	private boolean download(Version.Library library) throws InterruptedException
+	{
+		BufferedProgress buffer = new BufferedProgress(this.monitor);
+		Semaphore limit = HOSTS.computeIfAbsent(getHost(library), h -> new Semaphore(PER_HOST));
+		limit.acquire();
+		String path = library.getName().getPath();
+		boolean success = false;
+		try
+		{
+			buffer.artifact(path, ProgressCallback.ArtifactState.STARTED, -1L);
+			success = DownloadUtils.downloadLibrary(buffer, this.archive, this.mirror, library, this.root, this.optional, this.grabbed, this.additionalLibraryDirs);
+			return success;
+		} finally
+		{
+			limit.release();
+			File target = library.getName().getLocalPath(this.root);
+			buffer.artifact(path, success ? ProgressCallback.ArtifactState.VERIFIED : ProgressCallback.ArtifactState.FAILED, (success && target.isFile()) ? target.length() : -1L);
+			buffer.flush();
+		}
+	}
+	
+	private static long getSize(Version.Library library)
+	{
+		Version.LibraryDownload download = (library.getDownloads() == null) ? null : library.getDownloads().getArtifact();
+		return (download == null) ? -1L : download.getSize();
+	}
+	
+	private static String getHost(Version.Library library)
+	{
+		Version.LibraryDownload download = (library.getDownloads() == null) ? null : library.getDownloads().getArtifact();
+		if (download == null || download.getUrl().isEmpty())
+			return "";
+		try
+		{
+			String host = URI.create(download.getUrl()).getHost();
+			return (host == null) ? "" : host;
+		} catch (IllegalArgumentException e)
+		{
+			return "";
+		}
+	}
+	
+	public void close()
+	{
+		this.executor.shutdownNow();
+	}
+}
@@ -0,0 +1,159 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Optional content addressable store shared by every instance on the host. Files are stored as <root>/sha1/ab/abcdef...
+// and materialized into an instance's libraries directory as hardlinks, falling back to a copy when the filesystem
+// can't link (different volume, FAT, ...).
+public class LibraryStore
+{
+	private static volatile LibraryStore instance = null;
+	
+	private final Path root;
+	
+	// Only the SHA-1s being acquired right now, guarded by the map itself.
+	private final Map<String, Hold> locks = new HashMap<>();
+	
+	private LibraryStore(Path root)
+	{
+		this.root = root;
+	}
+	
+	public static synchronized void setRoot(File root)
+	{
+		instance = (root == null) ? null : new LibraryStore(root.toPath().toAbsolutePath().normalize());
+	}
+	
+	// Null when no store is configured.
+	public static LibraryStore get()
+	{
+		return instance;
+	}
+	
+	public File getRoot()
+	{
+		return this.root.toFile();
+	}
+	
+	public Path getPath(String sha1)
+	{
+		return this.root.resolve("sha1").resolve(sha1.substring(0, 2)).resolve(sha1);
+	}
+	
+	// Held while a file is being acquired, concurrent installs that need the same file wait and link it instead of
+	// fetching it again. Every lock is paired with an unlock in a finally block.
+	public void lock(String sha1)
+	{
+		Hold hold;
+		synchronized (this.locks)
+		{
+			hold = this.locks.computeIfAbsent(sha1, k -> new Hold());
+			hold.holders++;
+		}
+		hold.lock.lock();
+	}
+	
+	public void unlock(String sha1)
+	{
+		synchronized (this.locks)
+		{
+			Hold hold = this.locks.get(sha1);
+			hold.lock.unlock();
+			if (--hold.holders == 0)
+				this.locks.remove(sha1);
+		}
+	}
+	
+	public boolean contains(String sha1)
+	{
+		return Files.isRegularFile(getPath(sha1));
+	}
+	
+	// Places the stored file at the target, returns false if the store doesn't have a valid copy.
+	public boolean materialize(String sha1, File target)
+	{
+		Path stored = getPath(sha1);
+		if (!Files.isRegularFile(stored))
+			return false;
+		try
+		{
+			if (!sha1.equals(ChecksumCache.getSha1(stored.toFile())))
+			{
+				System.out.println("Shared store entry is corrupt, removing: " + stored);
+				Files.deleteIfExists(stored);
+				return false;
+			}
+			Path path = target.toPath();
+			Files.createDirectories(path.getParent());
+			Files.deleteIfExists(path);
+			link(stored, path);
+			ChecksumCache.record(target, sha1);
+			return true;
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	// Adds an already verified file to the store.
+	public void add(File source, String sha1)
+	{
+		Path stored = getPath(sha1);
+		if (Files.exists(stored))
+			return;
+		try
+		{
+			Files.createDirectories(stored.getParent());
+			link(source.toPath(), stored);
+			ChecksumCache.record(stored.toFile(), sha1);
+		} catch (FileAlreadyExistsException ignored)
+		{
+		} catch (IOException e)
+		{
+			System.out.println("Failed to add " + source + " to shared store: " + e.getMessage());
+		}
+	}
+	
+	private static void link(Path existing, Path link) throws IOException
+	{
+		try
+		{
+			Files.createLink(link, existing);
+			return;
+		} catch (FileAlreadyExistsException e)
+		{
+			throw e;
+		} catch (UnsupportedOperationException | FileSystemException ignored)
+		{
+		}
+		Path temp = Files.createTempFile(link.getParent(), link.getFileName().toString() + ".", ".tmp");
+		try
+		{
+			Files.copy(existing, temp, StandardCopyOption.REPLACE_EXISTING);
+			try
+			{
+				Files.move(temp, link, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp, link);
+			}
+		} finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	private static class Hold
+	{
+		private final ReentrantLock lock = new ReentrantLock();
+		
+		// Threads holding or waiting for the lock, the entry goes away with the last one.
+		private int holders = 0;
+	}
+}
@@ -0,0 +1,191 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Local cache of the launcher metadata (version manifest, version jsons), in the shared store or under the user's home
+// directory, never the shared temp directory where another user could plant a manifest. Files with a known SHA-1 are
+// immutable and stored by it, they are never fetched twice. Anything else is kept with the server's ETag /
+// Last-Modified and trusted for the given TTL, after that it is revalidated with a conditional request.
+// When the server can't be reached a stale copy is better than none and is used.
+public class MetadataCache
+{
+	private static final String DIRECTORY = "metadata";
+	
+	// Cached file -> lock, so two installs don't fetch the same file at once without holding up the others.
+	private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+	
+	// Returns the cached copy of the url, fetching or revalidating it if needed. Null when there is no usable copy.
+	public static Path fetch(String url, String sha1, long ttl)
+	{
+		Path root = getRoot();
+		try
+		{
+			if (sha1 != null)
+				return fetchObject(root, url, sha1);
+			return fetchUrl(root, url, ttl);
+		} catch (IOException e)
+		{
+			System.out.println("Failed to cache " + url + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	private static Path fetchObject(Path root, String url, String sha1) throws IOException
+	{
+		Path object = root.resolve("objects").resolve(sha1);
+		synchronized (lock(object))
+		{
+			return download(object, url, sha1);
+		}
+	}
+	
+	private static Path download(Path object, String url, String sha1) throws IOException
+	{
+		if (Files.isRegularFile(object))
+		{
+			if (sha1.equals(DownloadUtils.getSha1(object.toFile())))
+				return object;
+			Files.deleteIfExists(object);
+		}
+		try (InputStream stream = HttpTransport.open(url))
+		{
+			if (stream == null)
+				return null;
+			String actual = DownloadUtils.copyVerified(stream, object.toFile(), sha1);
+			if (!sha1.equals(actual))
+			{
+				System.out.println("Invalid checksum for " + url + ": expected " + sha1 + " got " + actual);
+				return null;
+			}
+			return object;
+		}
+	}
+	
+	private static Path fetchUrl(Path root, String url, long ttl) throws IOException
+	{
+		String key = HashFunction.SHA1.hash(url.getBytes(StandardCharsets.UTF_8));
+		Path body = root.resolve("urls").resolve(key);
+		synchronized (lock(body))
+		{
+			return revalidate(body, root.resolve("urls").resolve(key + ".meta"), url, ttl);
+		}
+	}
+	
+	private static Path revalidate(Path body, Path meta, String url, long ttl) throws IOException
+	{
+		Map<String, String> values = readMeta(meta);
+		boolean cached = Files.isRegularFile(body) && url.equals(values.get("url"));
+		long fetched = 0L;
+		try
+		{
+			fetched = Long.parseLong(values.getOrDefault("fetched", "0"));
+		} catch (NumberFormatException ignored)
+		{
+		}
+		// A fetch time in the future is as stale as an old one.
+		long age = System.currentTimeMillis() - fetched;
+		if (cached && age >= 0L && age < ttl)
+			return body;
+		HttpRequest.Builder request;
+		try
+		{
+			request = HttpTransport.request(url);
+		} catch (IllegalArgumentException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		if (cached && values.containsKey("etag"))
+			request.header("If-None-Match", values.get("etag"));
+		if (cached && values.containsKey("last-modified"))
+			request.header("If-Modified-Since", values.get("last-modified"));
+		HttpResponse<InputStream> response = HttpTransport.send(request.build(), cached);
+		if (response == null)
+			return cached ? body : null;
+		String etag = response.headers().firstValue("ETag").orElse(values.get("etag"));
+		String lastModified = response.headers().firstValue("Last-Modified").orElse(values.get("last-modified"));
+		try (InputStream stream = RateLimiter.throttle(response.body(), RateLimiter.network()))
+		{
+			if (response.statusCode() != 304)
+				DownloadUtils.copyVerified(stream, body.toFile(), null);
+		} catch (IOException e)
+		{
+			// The copy goes through a temp file, a failed one leaves the cached body as it was.
+			if (!cached)
+				throw e;
+			System.out.println("Failed to refresh " + url + ", using the cached copy: " + e.getMessage());
+			return body;
+		}
+		writeMeta(meta, url, etag, lastModified);
+		return body;
+	}
+	
+	private static Object lock(Path file)
+	{
+		return LOCKS.computeIfAbsent(file.toAbsolutePath(), k -> new Object());
+	}
+	
+	private static Map<String, String> readMeta(Path meta)
+	{
+		Map<String, String> values = new HashMap<>();
+		if (!Files.isRegularFile(meta))
+			return values;
+		try
+		{
+			for (String line : Files.readAllLines(meta, StandardCharsets.UTF_8))
+			{
+				int idx = line.indexOf('\t');
+				if (idx != -1)
+					values.put(line.substring(0, idx), line.substring(idx + 1));
+			}
+		} catch (IOException e)
+		{
+			values.clear();
+		}
+		return values;
+	}
+	
+	private static void writeMeta(Path meta, String url, String etag, String lastModified) throws IOException
+	{
+		StringBuilder buf = new StringBuilder();
+		buf.append("url\t").append(url).append('\n');
+		if (etag != null)
+			buf.append("etag\t").append(etag).append('\n');
+		if (lastModified != null)
+			buf.append("last-modified\t").append(lastModified).append('\n');
+		buf.append("fetched\t").append(System.currentTimeMillis()).append('\n');
+		Files.createDirectories(meta.getParent());
+		Path temp = Files.createTempFile(meta.getParent(), meta.getFileName().toString(), ".tmp");
+		try
+		{
+			Files.write(temp, buf.toString().getBytes(StandardCharsets.UTF_8));
+			try
+			{
+				Files.move(temp, meta, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp, meta, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	private static Path getRoot()
+	{
+		LibraryStore store = LibraryStore.get();
+		if (store != null)
+			return store.getRoot().toPath().resolve(DIRECTORY);
+		return new File(new File(System.getProperty("user.home", "."), ".forgewrapper"), DIRECTORY).toPath();
+	}
+}
@@ -0,0 +1,319 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import chase.minecraft.ForgeWrapper.installer.json.Mirror;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Picks the mirrors an install downloads from. The mirror list is fetched in the background as soon as the install
+// profile is read and every mirror is probed with a HEAD request, the ones that answer are ranked by how fast they did.
+// Downloads go to the best mirror first and fail over to the next one when it errors or is slow to send the first byte.
+// What is learned is kept in a small health file (in the shared store, or the temp directory) so the next run skips
+// dead mirrors and doesn't probe again while the results are fresh.
+public class MirrorSelector
+{
+	public static Duration PROBE_TIMEOUT = Duration.ofSeconds(3);
+	
+	// How long a mirror may take to start answering a download before the next one is tried.
+	public static Duration FIRST_BYTE_TIMEOUT = Duration.ofSeconds(5);
+	
+	// How long probe results are trusted, and for how long a mirror that keeps failing is skipped.
+	public static long HEALTH_TTL = 60L * 60L * 1000L;
+	
+	private static final int MAX_FAILURES = 3;
+	
+	private static final String HEALTH_FILE = "mirrors.health";
+	
+	// Mirror list url -> the fetch of it, kept for HEALTH_TTL. Lists that failed or came back empty are dropped.
+	private static final Map<String, Listing> LISTS = new ConcurrentHashMap<>();
+	
+	private static final Map<String, Health> HEALTH = new ConcurrentHashMap<>();
+	
+	// Mirror url -> the ranked list it belongs to, so a download can fail over to the others.
+	private static final Map<String, List<Mirror>> RANKED = new ConcurrentHashMap<>();
+	
+	private static Path loaded = null;
+	
+	// Starts fetching and probing the mirror list, returns right away.
+	public static CompletableFuture<List<Mirror>> prefetch(String mirrorList)
+	{
+		return LISTS.compute(mirrorList, (url, cached) -> (cached != null && cached.isFresh()) ? cached : fetch(url)).future;
+	}
+	
+	private static Listing fetch(String url)
+	{
+		CompletableFuture<List<Mirror>> future = CompletableFuture.supplyAsync(() -> DownloadUtils.downloadMirrors(url)).thenCompose(MirrorSelector::probe).exceptionally(e ->
+		{
+			e.printStackTrace();
+			return new ArrayList<>();
+		});
+		Listing listing = new Listing(future);
+		// Async, so it never runs inside the compute that is adding it.
+		future.whenCompleteAsync((list, e) ->
+		{
+			if (list == null || list.isEmpty())
+				LISTS.remove(url, listing);
+		});
+		return listing;
+	}
+	
+	// The usable mirrors of the list best first, waits for the probes if they are still running.
+	public static List<Mirror> get(String mirrorList)
+	{
+		try
+		{
+			return prefetch(mirrorList).get(PROBE_TIMEOUT.toMillis() * 2L + 30000L, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return new ArrayList<>();
+		} catch (ExecutionException | TimeoutException e)
+		{
+			e.printStackTrace();
+			return new ArrayList<>();
+		}
+	}
+	
+	// The mirrors to try for a download in order, starting with the preferred one and skipping any that failed since.
+	public static List<Mirror> getCandidates(Mirror preferred)
+	{
+		List<Mirror> ranked = RANKED.get(preferred.getUrl());
+		if (ranked == null)
+			return List.of(preferred);
+		List<Mirror> ret = new ArrayList<>();
+		ret.add(preferred);
+		for (Mirror mirror : ranked)
+		{
+			if (mirror != preferred && isUsable(getHealth(mirror)))
+				ret.add(mirror);
+		}
+		return ret;
+	}
+	
+	public static void reportSuccess(Mirror mirror)
+	{
+		Health health = getHealth(mirror);
+		synchronized (health)
+		{
+			if (health.failures == 0)
+				return;
+			health.failures = 0;
+		}
+		save();
+	}
+	
+	public static void reportFailure(Mirror mirror)
+	{
+		Health health = getHealth(mirror);
+		synchronized (health)
+		{
+			health.failures++;
+			health.checked = System.currentTimeMillis();
+		}
+		save();
+	}
+	
+	private static CompletableFuture<List<Mirror>> probe(Mirror[] list)
+	{
+		if (list == null || list.length == 0)
+			return CompletableFuture.completedFuture(new ArrayList<>());
+		load();
+		long now = System.currentTimeMillis();
+		List<CompletableFuture<Void>> probes = new ArrayList<>();
+		for (Mirror mirror : list)
+		{
+			Health health = getHealth(mirror);
+			synchronized (health)
+			{
+				if (now - health.checked < HEALTH_TTL)
+					continue;
+			}
+			probes.add(probe(mirror, health));
+		}
+		return CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[0])).thenApply(v ->
+		{
+			if (!probes.isEmpty())
+				save();
+			List<Mirror> ranked = new ArrayList<>();
+			for (Mirror mirror : list)
+			{
+				// Mirrors that didn't answer their last probe wait for the next one.
+				Health health = getHealth(mirror);
+				if (isUsable(health) && health.latency != Long.MAX_VALUE)
+					ranked.add(mirror);
+			}
+			ranked.sort(Comparator.comparingLong(mirror -> getHealth(mirror).latency));
+			List<Mirror> ret = Collections.unmodifiableList(ranked);
+			for (Mirror mirror : ret)
+				RANKED.put(mirror.getUrl(), ret);
+			return ret;
+		});
+	}
+	
+	private static CompletableFuture<Void> probe(Mirror mirror, Health health)
+	{
+		HttpRequest request;
+		try
+		{
+			request = HttpTransport.request(mirror.getUrl()).method("HEAD", HttpRequest.BodyPublishers.noBody()).timeout(PROBE_TIMEOUT).build();
+		} catch (IllegalArgumentException e)
+		{
+			return CompletableFuture.runAsync(() -> record(health, -1L));
+		}
+		long started = System.nanoTime();
+		// Any answer, even an error page for the bare mirror root, shows the mirror is up.
+		return HttpTransport.getClient().sendAsync(request, HttpResponse.BodyHandlers.discarding()).handle((response, e) ->
+		{
+			record(health, (e == null) ? System.nanoTime() - started : -1L);
+			return null;
+		});
+	}
+	
+	private static void record(Health health, long nanos)
+	{
+		synchronized (health)
+		{
+			health.checked = System.currentTimeMillis();
+			if (nanos < 0L)
+			{
+				health.latency = Long.MAX_VALUE;
+				health.failures++;
+				return;
+			}
+			long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+			health.latency = (health.latency == Long.MAX_VALUE) ? millis : (health.latency + millis) / 2L;
+			health.failures = 0;
+		}
+	}
+	
+	private static boolean isUsable(Health health)
+	{
+		synchronized (health)
+		{
+			return health.failures < MAX_FAILURES || System.currentTimeMillis() - health.checked >= HEALTH_TTL;
+		}
+	}
+	
+	private static Health getHealth(Mirror mirror)
+	{
+		return HEALTH.computeIfAbsent(mirror.getUrl(), k -> new Health());
+	}
+	
+	private static Path getHealthFile()
+	{
+		LibraryStore store = LibraryStore.get();
+		if (store != null)
+			return store.getRoot().toPath().resolve(HEALTH_FILE);
+		return new File(System.getProperty("java.io.tmpdir"), "forgewrapper-" + HEALTH_FILE).toPath();
+	}
+	
+	// url \t latency millis \t failures \t last checked millis
+	private static synchronized void load()
+	{
+		Path file = getHealthFile();
+		if (file.equals(loaded))
+			return;
+		loaded = file;
+		if (!Files.isRegularFile(file))
+			return;
+		try
+		{
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+			{
+				String[] pts = line.split("\t");
+				if (pts.length != 4)
+					continue;
+				try
+				{
+					Health health = HEALTH.computeIfAbsent(pts[0], k -> new Health());
+					synchronized (health)
+					{
+						health.latency = Long.parseLong(pts[1]);
+						health.failures = Integer.parseInt(pts[2]);
+						health.checked = Long.parseLong(pts[3]);
+					}
+				} catch (NumberFormatException ignored)
+				{
+				}
+			}
+		} catch (IOException e)
+		{
+			System.out.println("Failed to read mirror health " + file + ": " + e.getMessage());
+		}
+	}
+	
+	private static synchronized void save()
+	{
+		Path file = getHealthFile();
+		StringBuilder buf = new StringBuilder();
+		for (Map.Entry<String, Health> e : HEALTH.entrySet())
+		{
+			Health health = e.getValue();
+			synchronized (health)
+			{
+				if (health.checked == 0L)
+					continue;
+				buf.append(e.getKey()).append('\t').append(health.latency).append('\t').append(health.failures).append('\t').append(health.checked).append('\n');
+			}
+		}
+		try
+		{
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), HEALTH_FILE, ".tmp");
+			try
+			{
+				Files.write(temp, buf.toString().getBytes(StandardCharsets.UTF_8));
+				try
+				{
+					Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e)
+				{
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally
+			{
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e)
+		{
+			System.out.println("Failed to write mirror health " + file + ": " + e.getMessage());
+		}
+	}
+	
+	private static class Listing
+	{
+		private final CompletableFuture<List<Mirror>> future;
+		
+		private final long created = System.currentTimeMillis();
+		
+		private Listing(CompletableFuture<List<Mirror>> future)
+		{
+			this.future = future;
+		}
+		
+		private boolean isFresh()
+		{
+			return System.currentTimeMillis() - this.created < HEALTH_TTL;
+		}
+	}
+	
+	private static class Health
+	{
+		private long latency = Long.MAX_VALUE;
+		
+		private int failures = 0;
+		
+		private long checked = 0L;
+	}
+}
@@ -0,0 +1,204 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import chase.minecraft.ForgeWrapper.installer.actions.ProgressCallback;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+// Routes what processors print to System.out and System.err into a log file per processor, by thread, so processors
+// running side by side don't interleave and a noisy one only pays for a buffered file write. Lines are assembled in
+// reusable buffers, only the last TAIL lines are kept and handed to the monitor once the processor is done.
+// Threads that aren't capturing write to the original streams.
+public class OutputCapture
+{
+	public static int TAIL = 20;
+	
+	// Inherited so threads a processor starts are captured with it.
+	private static final InheritableThreadLocal<Capture> CURRENT = new InheritableThreadLocal<>();
+	
+	private static Router out = null;
+	
+	private static Router err = null;
+	
+	// Hooks System.out and System.err, again if something replaced them since.
+	public static synchronized void install()
+	{
+		if (out == null || System.out != out.stream)
+		{
+			out = new Router(System.out);
+			System.setOut(out.stream);
+		}
+		if (err == null || System.err != err.stream)
+		{
+			err = new Router(System.err);
+			System.setErr(err.stream);
+		}
+	}
+	
+	// Captures the output of the current thread until the capture is closed.
+	public static Capture begin(File log) throws IOException
+	{
+		install();
+		Files.createDirectories(log.getAbsoluteFile().getParentFile().toPath());
+		Capture capture = new Capture(log);
+		CURRENT.set(capture);
+		return capture;
+	}
+	
+	private static class Router extends OutputStream
+	{
+		private final PrintStream original;
+		
+		private final PrintStream stream;
+		
+		private Router(PrintStream original)
+		{
+			this.original = original;
+			this.stream = new PrintStream(this, true);
+		}
+		
+		public void write(int b) throws IOException
+		{
+			Capture capture = CURRENT.get();
+			if (capture == null || capture.closed)
+				this.original.write(b);
+			else
+				capture.write(b);
+		}
+		
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			Capture capture = CURRENT.get();
+			if (capture == null || capture.closed)
+				this.original.write(b, off, len);
+			else
+				capture.write(b, off, len);
+		}
+		
+		public void flush()
+		{
+			Capture capture = CURRENT.get();
+			if (capture == null || capture.closed)
+				this.original.flush();
+		}
+	}
+	
+	public static class Capture
+	{
+		private final File log;
+		
+		private final OutputStream file;
+		
+		// The tail is a ring of line buffers that are reused as lines come in.
+		private final byte[][] lines = new byte[Math.max(1, TAIL)][];
+		
+		private final int[] lengths = new int[this.lines.length];
+		
+		private byte[] line = new byte[256];
+		
+		private int length = 0;
+		
+		private int next = 0;
+		
+		private long count = 0L;
+		
+		private volatile boolean closed = false;
+		
+		private Capture(File log) throws IOException
+		{
+			this.log = log;
+			this.file = new BufferedOutputStream(new FileOutputStream(log), 64 * 1024);
+		}
+		
+		public File getLog()
+		{
+			return this.log;
+		}
+		
+		// A thread the processor left running may still print after it is done, that is dropped.
+		private synchronized void write(int b) throws IOException
+		{
+			if (this.closed)
+				return;
+			this.file.write(b);
+			append(b);
+		}
+		
+		private synchronized void write(byte[] b, int off, int len) throws IOException
+		{
+			if (this.closed)
+				return;
+			this.file.write(b, off, len);
+			for (int x = off; x < off + len; x++)
+				append(b[x]);
+		}
+		
+		private void append(int b)
+		{
+			if (b == '\n')
+			{
+				endLine();
+				return;
+			}
+			if (this.length == this.line.length)
+			{
+				// Only the start of very long lines is kept for the tail, the log has all of it.
+				if (this.length >= 4096)
+					return;
+				byte[] grown = new byte[this.length * 2];
+				System.arraycopy(this.line, 0, grown, 0, this.length);
+				this.line = grown;
+			}
+			this.line[this.length++] = (byte) b;
+		}
+		
+		private void endLine()
+		{
+			int len = this.length;
+			if (len > 0 && this.line[len - 1] == '\r')
+				len--;
+			this.length = 0;
+			this.count++;
+			int slot = this.next;
+			this.next = (this.next + 1) % this.lines.length;
+			if (this.lines[slot] == null || this.lines[slot].length < len)
+				this.lines[slot] = new byte[Math.max(len, 128)];
+			System.arraycopy(this.line, 0, this.lines[slot], 0, len);
+			this.lengths[slot] = len;
+		}
+		
+		// Stops capturing and closes the log. The monitor gets a summary, the tail follows as LOW messages after a
+		// successful run and as NORMAL ones after a failure, so it shows up next to the error.
+		public synchronized void close(ProgressCallback monitor, boolean success)
+		{
+			if (this.closed)
+				return;
+			this.closed = true;
+			if (CURRENT.get() == this)
+				CURRENT.remove();
+			if (this.length > 0)
+				endLine();
+			try
+			{
+				this.file.close();
+			} catch (IOException e)
+			{
+				monitor.message("  Failed to write processor log " + this.log + ": " + e.getMessage());
+			}
+			if (this.count == 0L)
+				return;
+			monitor.message("  Output: " + this.count + " lines, see " + this.log);
+			ProgressCallback.MessagePriority priority = success ? ProgressCallback.MessagePriority.LOW : ProgressCallback.MessagePriority.NORMAL;
+			if (!monitor.isLoggable(priority))
+				return;
+			int kept = (int) Math.min(this.count, this.lines.length);
+			Charset charset = Charset.defaultCharset();
+			for (int x = 0; x < kept; x++)
+			{
+				int slot = (this.next - kept + x + this.lines.length) % this.lines.length;
+				monitor.message("    " + new String(this.lines[slot], 0, this.lengths[slot], charset), priority);
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Content addressed cache of post processor outputs, shared by every instance on the host.
+// An entry is keyed by everything that determines a processor's result: the jar, its classpath, the arguments with the
+// instance specific paths stripped, and the SHA-1 of every input file. Entries live in <root>/entries/<key> and list
+// the output files, the file contents are stored once in <root>/objects/ab/<sha1>.
+// The cache is kept below MAX_SIZE by dropping the least recently used entries.
+public class ProcessorCache
+{
+	public static long MAX_SIZE = 4L * 1024L * 1024L * 1024L;
+	
+	private static ProcessorCache instance = null;
+	
+	private final Path entries;
+	
+	private final Path objects;
+	
+	private final Map<String, Object> locks = new ConcurrentHashMap<>();
+	
+	private ProcessorCache(Path root)
+	{
+		this.entries = root.resolve("entries");
+		this.objects = root.resolve("objects");
+	}
+	
+	public static synchronized void setRoot(File root)
+	{
+		instance = (root == null) ? null : new ProcessorCache(root.toPath().toAbsolutePath().normalize());
+	}
+	
+	// Null when no cache is configured.
+	public static ProcessorCache get()
+	{
+		return instance;
+	}
+	
+	public static String key(List<String> parts)
+	{
+		return HashFunction.SHA1.hash(String.join("\n", parts).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	// Held while a processor with this key is restored or run.
+	public Object lock(String key)
+	{
+		return this.locks.computeIfAbsent(key, k -> new Object());
+	}
+	
+	// Restores every output recorded for the key, the resolver maps the stored (instance independent) paths back to
+	// files in this instance. Returns false on a miss or if any output couldn't be restored.
+	public boolean restore(String key, Function<String, File> resolver)
+	{
+		Path entry = this.entries.resolve(key);
+		if (!Files.isRegularFile(entry))
+			return false;
+		try
+		{
+			for (String line : Files.readAllLines(entry, StandardCharsets.UTF_8))
+			{
+				int idx = line.indexOf('\t');
+				if (idx == -1)
+					continue;
+				String sha1 = line.substring(0, idx);
+				Path object = getObject(sha1);
+				if (!Files.isRegularFile(object))
+				{
+					Files.deleteIfExists(entry);
+					return false;
+				}
+				File target = resolver.apply(line.substring(idx + 1));
+				try (InputStream input = Files.newInputStream(object))
+				{
+					if (!sha1.equals(DownloadUtils.copyVerified(input, target, sha1)))
+					{
+						Files.deleteIfExists(object);
+						Files.deleteIfExists(entry);
+						return false;
+					}
+				}
+			}
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+			return true;
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	// Records the outputs of a processor run, keyed by their instance independent path.
+	public synchronized void store(String key, Map<String, File> outputs)
+	{
+		try
+		{
+			StringBuilder entry = new StringBuilder();
+			for (Map.Entry<String, File> e : outputs.entrySet())
+			{
+				String sha1 = DownloadUtils.getSha1(e.getValue());
+				if (sha1 == null)
+					return;
+				Path object = getObject(sha1);
+				if (!Files.isRegularFile(object))
+				{
+					Files.createDirectories(object.getParent());
+					Path temp = Files.createTempFile(object.getParent(), sha1 + ".", ".tmp");
+					try
+					{
+						Files.copy(e.getValue().toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+						move(temp, object);
+					} finally
+					{
+						Files.deleteIfExists(temp);
+					}
+				}
+				entry.append(sha1).append('\t').append(e.getKey()).append('\n');
+			}
+			Files.createDirectories(this.entries);
+			Path temp = Files.createTempFile(this.entries, key + ".", ".tmp");
+			try
+			{
+				Files.write(temp, entry.toString().getBytes(StandardCharsets.UTF_8));
+				move(temp, this.entries.resolve(key));
+			} finally
+			{
+				Files.deleteIfExists(temp);
+			}
+			evict();
+		} catch (IOException e)
+		{
+			System.out.println("Failed to store processor outputs in cache: " + e.getMessage());
+		}
+	}
+	
+	private void evict() throws IOException
+	{
+		List<Path> keys;
+		try (Stream<Path> stream = Files.list(this.entries))
+		{
+			keys = stream.filter(p -> !p.getFileName().toString().endsWith(".tmp")).collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+		}
+		Map<Path, FileTime> used = new HashMap<>();
+		Map<Path, List<String>> contents = new HashMap<>();
+		for (Path key : keys)
+		{
+			try
+			{
+				used.put(key, Files.getLastModifiedTime(key));
+				List<String> shas = new ArrayList<>();
+				for (String line : Files.readAllLines(key, StandardCharsets.UTF_8))
+				{
+					int idx = line.indexOf('\t');
+					if (idx != -1)
+						shas.add(line.substring(0, idx));
+				}
+				contents.put(key, shas);
+			} catch (NoSuchFileException ignored)
+			{
+			}
+		}
+		Map<String, Long> sizes = new HashMap<>();
+		long total = 0L;
+		for (List<String> shas : contents.values())
+		{
+			for (String sha1 : shas)
+			{
+				if (!sizes.containsKey(sha1))
+				{
+					Path object = getObject(sha1);
+					long size = Files.isRegularFile(object) ? Files.size(object) : 0L;
+					sizes.put(sha1, size);
+					total += size;
+				}
+			}
+		}
+		if (total <= MAX_SIZE)
+			return;
+		List<Path> oldest = new ArrayList<>(contents.keySet());
+		oldest.sort(Comparator.comparing(used::get));
+		Map<String, Integer> references = new HashMap<>();
+		for (List<String> shas : contents.values())
+			for (String sha1 : shas)
+				references.merge(sha1, 1, Integer::sum);
+		for (Path key : oldest)
+		{
+			if (total <= MAX_SIZE)
+				break;
+			Files.deleteIfExists(key);
+			for (String sha1 : contents.get(key))
+			{
+				if (references.merge(sha1, -1, Integer::sum) == 0)
+				{
+					Files.deleteIfExists(getObject(sha1));
+					total -= sizes.get(sha1);
+				}
+			}
+		}
+	}
+	
+	private Path getObject(String sha1)
+	{
+		return this.objects.resolve(sha1.substring(0, 2)).resolve(sha1);
+	}
+	
+	private static void move(Path temp, Path target) throws IOException
+	{
+		try
+		{
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -97,6 +97,26 @@ public class ProgressFrame extends JFrame implements ProgressCallback {
     message(message, priority, true);
   }
   
+  public void phaseStart(String phase) {
+    this.parent.phaseStart(phase);
+  }
+  
+  public void phaseEnd(String phase, boolean success) {
+    this.parent.phaseEnd(phase, success);
+  }
+  
+  public void artifact(String artifact, ProgressCallback.ArtifactState state, long bytes) {
+    this.parent.artifact(artifact, state, bytes);
+  }
+  
+  public void processorStart(int index, String name) {
+    this.parent.processorStart(index, name);
+  }
+  
+  public void processorEnd(int index, String name, boolean success, long nanos) {
+    this.parent.processorEnd(index, name, success, nanos);
+  }
+  
   public void message(String message, ProgressCallback.MessagePriority priority, boolean notifyParent) {
     if (priority == ProgressCallback.MessagePriority.HIGH)
       this.progressText.setText(message); 
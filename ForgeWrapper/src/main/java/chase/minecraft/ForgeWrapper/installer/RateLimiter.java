@@ -0,0 +1,168 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+// Token bucket limiting the bytes per second the whole process reads from the network or writes to disk, so
+// provisioning on a shared host doesn't starve its neighbours. The copy loops take tokens after every chunk, a thread
+// that runs into debt sleeps it off on its own and everything else keeps going.
+// A batch job or daemon request can be given a share of the limit, its threads then draw from a child bucket that
+// also draws from the global one.
+public class RateLimiter
+{
+	// Null when unlimited.
+	public static RateLimiter NETWORK = null;
+	
+	public static RateLimiter DISK = null;
+	
+	// Inherited so the download and extraction pools an install starts use its share.
+	private static final InheritableThreadLocal<RateLimiter> JOB_NETWORK = new InheritableThreadLocal<>();
+	
+	private static final InheritableThreadLocal<RateLimiter> JOB_DISK = new InheritableThreadLocal<>();
+	
+	private final String name;
+	
+	private final long rate;
+	
+	private final RateLimiter parent;
+	
+	private double tokens;
+	
+	private long last = System.nanoTime();
+	
+	private long started = 0L;
+	
+	private long bytes = 0L;
+	
+	private long waited = 0L;
+	
+	public RateLimiter(String name, long bytesPerSecond)
+	{
+		this(name, bytesPerSecond, null);
+	}
+	
+	private RateLimiter(String name, long bytesPerSecond, RateLimiter parent)
+	{
+		this.name = name;
+		this.rate = Math.max(1L, bytesPerSecond);
+		this.parent = parent;
+		this.tokens = getBurst();
+	}
+	
+	// The limiter for network reads on this thread, null when unlimited.
+	public static RateLimiter network()
+	{
+		RateLimiter job = JOB_NETWORK.get();
+		return (job != null) ? job : NETWORK;
+	}
+	
+	public static RateLimiter disk()
+	{
+		RateLimiter job = JOB_DISK.get();
+		return (job != null) ? job : DISK;
+	}
+	
+	// Limits this thread, and the threads it starts until endJob, to a share of the global limits.
+	public static void beginJob(String name, double share)
+	{
+		if (share > 0.0 && share < 1.0)
+		{
+			if (NETWORK != null)
+				JOB_NETWORK.set(new RateLimiter(name + " network", (long) (NETWORK.rate * share), NETWORK));
+			if (DISK != null)
+				JOB_DISK.set(new RateLimiter(name + " disk", (long) (DISK.rate * share), DISK));
+		}
+	}
+	
+	public static void endJob()
+	{
+		JOB_NETWORK.remove();
+		JOB_DISK.remove();
+	}
+	
+	public static void acquire(RateLimiter limiter, long bytes)
+	{
+		if (limiter != null && bytes > 0L)
+			limiter.acquire(bytes);
+	}
+	
+	public static InputStream throttle(InputStream input, RateLimiter limiter)
+	{
+		if (input == null || limiter == null)
+			return input;
+		return new FilterInputStream(input)
+		{
+			public int read() throws IOException
+			{
+				int b = super.read();
+				if (b != -1)
+					limiter.acquire(1L);
+				return b;
+			}
+			
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				int read = super.read(b, off, len);
+				if (read > 0)
+					limiter.acquire(read);
+				return read;
+			}
+		};
+	}
+	
+	public long getRate()
+	{
+		return this.rate;
+	}
+	
+	// Takes the tokens for bytes that were just moved, sleeping until the bucket has paid for them. An interrupt ends
+	// the wait early and is kept for the caller to notice.
+	public void acquire(long bytes)
+	{
+		long wait;
+		synchronized (this)
+		{
+			long now = System.nanoTime();
+			if (this.started == 0L)
+				this.started = now;
+			this.tokens = Math.min(getBurst(), this.tokens + (now - this.last) * (double) this.rate / 1_000_000_000.0);
+			this.last = now;
+			this.tokens -= bytes;
+			this.bytes += bytes;
+			wait = (this.tokens < 0.0) ? (long) (-this.tokens * 1_000_000_000.0 / this.rate) : 0L;
+			this.waited += wait;
+		}
+		long deadline = System.nanoTime() + wait;
+		while (wait > 0L && !Thread.currentThread().isInterrupted())
+		{
+			LockSupport.parkNanos(wait);
+			wait = deadline - System.nanoTime();
+		}
+		if (this.parent != null)
+			this.parent.acquire(bytes);
+	}
+	
+	// What the limiter let through so far, for the install summary.
+	public synchronized String describe()
+	{
+		double seconds = (this.started == 0L) ? 0.0 : (System.nanoTime() - this.started) / 1_000_000_000.0;
+		double actual = (seconds <= 0.0) ? 0.0 : this.bytes / seconds;
+		return String.format(Locale.ROOT, "%s: %s at %s/s (limit %s/s, throttled %.1fs)", this.name, format(this.bytes), format((long) actual), format(this.rate), this.waited / 1_000_000_000.0);
+	}
+	
+	// One second worth of tokens, but at least a full copy buffer.
+	private double getBurst()
+	{
+		return Math.max(this.rate, 65536L);
+	}
+	
+	private static String format(long bytes)
+	{
+		if (bytes >= 1024L * 1024L)
+			return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+		return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+	}
+}
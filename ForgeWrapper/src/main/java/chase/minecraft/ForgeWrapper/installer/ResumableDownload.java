@@ -0,0 +1,348 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.*;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+// Downloads into <target>.part and keeps a small journal next to it, <target>.part.journal, with the URL, the
+// server's validators (ETag / Last-Modified), the expected SHA-1 and the number of bytes written so far. A transfer
+// that times out, drops or can't reconnect is picked up again with a Range request, right away up to RETRIES times and
+// otherwise on the next run. Only downloads with an expected SHA-1 are resumed, the journal belongs to it so a part from
+// a mirror that failed is resumed from the next one. The server has to prove with If-Range that the file didn't
+// change, the part is only thrown away when it answers with the whole file or refuses the range (412 / 416). The SHA-1
+// always covers the whole file, the part already on disk is hashed again first.
+public class ResumableDownload
+{
+	public static int RETRIES = 3;
+	
+	private final String url;
+	
+	private final File target;
+	
+	private final String checksum;
+	
+	private final Path part;
+	
+	private final Path journal;
+	
+	private final Duration timeout;
+	
+	private String etag = null;
+	
+	private String lastModified = null;
+	
+	private ResumableDownload(String url, File target, String checksum, Duration timeout)
+	{
+		this.url = url;
+		this.timeout = timeout;
+		this.target = target;
+		this.checksum = (checksum == null || checksum.isEmpty()) ? null : checksum;
+		this.part = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".part").toPath();
+		this.journal = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".part.journal").toPath();
+	}
+	
+	// Returns the SHA-1 of the downloaded file, the target is only replaced when it matches the checksum (or none is
+	// expected). Returns null when the server couldn't be reached or refused the request.
+	public static String fetch(String url, File target, String checksum, LongConsumer progress) throws IOException
+	{
+		return fetch(url, target, checksum, progress, null);
+	}
+	
+	// The timeout, when given, limits how long the server may take to start answering.
+	public static String fetch(String url, File target, String checksum, LongConsumer progress, Duration timeout) throws IOException
+	{
+		return new ResumableDownload(url, target, checksum, timeout).fetch(progress);
+	}
+	
+	private String fetch(LongConsumer progress) throws IOException
+	{
+		Files.createDirectories(this.part.getParent());
+		IOException failure = null;
+		for (int attempt = 0; attempt <= RETRIES; attempt++)
+		{
+			try
+			{
+				return transfer(progress);
+			} catch (IOException e)
+			{
+				if (Thread.currentThread().isInterrupted() || DownloadUtils.OFFLINE_MODE)
+					throw e;
+				failure = e;
+				System.out.println("Download of " + this.url + " interrupted at " + partLength() + " bytes: " + e.getMessage());
+			}
+		}
+		throw failure;
+	}
+	
+	private String transfer(LongConsumer progress) throws IOException
+	{
+		long offset = getResumeOffset();
+		HttpRequest.Builder request = HttpTransport.request(this.url);
+		if (this.timeout != null)
+			request.timeout(this.timeout);
+		if (offset > 0L)
+		{
+			request.header("Range", "bytes=" + offset + "-");
+			request.header("If-Range", (this.etag != null) ? this.etag : this.lastModified);
+		}
+		if (DownloadUtils.OFFLINE_MODE)
+		{
+			System.out.println("Offline Mode: Not downloading: " + this.url);
+			return null;
+		}
+		HttpResponse<InputStream> response;
+		try
+		{
+			response = HttpTransport.exchange(request.build());
+		} catch (IllegalArgumentException e)
+		{
+			e.printStackTrace();
+			return null;
+		} catch (IOException e)
+		{
+			// With nothing on disk there is nothing to come back for, otherwise the retry keeps the part.
+			if (offset > 0L)
+				throw e;
+			System.out.println("Failed to download " + this.url + ": " + e);
+			return null;
+		}
+		int code = response.statusCode();
+		if (offset > 0L && (code == 412 || code == 416 || (code == 206 && getRangeStart(response) != offset)))
+		{
+			// The part doesn't match what the server has anymore, start over.
+			response.body().close();
+			discard();
+			return transfer(progress);
+		}
+		if (code < 200 || code >= 300)
+		{
+			response.body().close();
+			// A server error doesn't say anything about the part, keep it for the retry.
+			if (offset > 0L)
+				throw new IOException("HTTP " + code + " resuming " + this.url);
+			System.out.println("Failed to download " + this.url + ": HTTP " + code);
+			return null;
+		}
+		// A 200 means If-Range failed or the server ignores ranges, the whole file follows.
+		if (code != 206)
+			offset = 0L;
+		if (offset == 0L)
+		{
+			this.etag = response.headers().firstValue("ETag").filter(e -> !e.startsWith("W/")).orElse(null);
+			this.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+		}
+		String sha1;
+		try (InputStream input = response.body(); FileChannel channel = FileChannel.open(this.part, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+		{
+			channel.truncate(offset);
+			channel.position(offset);
+			MessageDigest digest = HashFunction.SHA1.get();
+			if (offset > 0L)
+				hash(digest, offset);
+			checkpoint(channel, offset);
+			OutputStream output = Channels.newOutputStream(channel);
+			RateLimiter network = RateLimiter.network();
+			RateLimiter disk = RateLimiter.disk();
+			byte[] buffer = new byte[65536];
+			int len;
+			long total = offset;
+			long report = offset + DownloadUtils.PROGRESS_INTERVAL;
+			try
+			{
+				while ((len = input.read(buffer)) != -1)
+				{
+					digest.update(buffer, 0, len);
+					output.write(buffer, 0, len);
+					RateLimiter.acquire(network, len);
+					RateLimiter.acquire(disk, len);
+					total += len;
+					if (total >= report)
+					{
+						if (progress != null)
+							progress.accept(total);
+						checkpoint(channel, total);
+						report = total + DownloadUtils.PROGRESS_INTERVAL;
+					}
+				}
+			} catch (IOException e)
+			{
+				try
+				{
+					checkpoint(channel, total);
+				} catch (IOException suppressed)
+				{
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+			if (progress != null)
+				progress.accept(total);
+			channel.force(false);
+			sha1 = HashFunction.SHA1.finish(digest);
+		}
+		if (this.checksum == null || this.checksum.equals(sha1))
+		{
+			commit();
+			ChecksumCache.record(this.target, sha1);
+		}
+		Files.deleteIfExists(this.journal);
+		Files.deleteIfExists(this.part);
+		return sha1;
+	}
+	
+	// The journal only ever vouches for bytes that are on disk. Without a SHA-1 a resumed file couldn't be checked, so
+	// there is no journal and nothing is resumed.
+	private void checkpoint(FileChannel channel, long bytes) throws IOException
+	{
+		if (this.checksum == null)
+			return;
+		channel.force(false);
+		writeJournal(bytes);
+	}
+	
+	// Where an earlier attempt left off, 0 when there is nothing usable to resume.
+	private long getResumeOffset() throws IOException
+	{
+		if (this.checksum == null || !Files.isRegularFile(this.part) || !Files.isRegularFile(this.journal))
+		{
+			discard();
+			return 0L;
+		}
+		Map<String, String> values = new HashMap<>();
+		try
+		{
+			for (String line : Files.readAllLines(this.journal, StandardCharsets.UTF_8))
+			{
+				int idx = line.indexOf('\t');
+				if (idx != -1)
+					values.put(line.substring(0, idx), line.substring(idx + 1));
+			}
+		} catch (IOException e)
+		{
+			discard();
+			return 0L;
+		}
+		long bytes;
+		try
+		{
+			bytes = Long.parseLong(values.getOrDefault("bytes", "0"));
+		} catch (NumberFormatException e)
+		{
+			bytes = 0L;
+		}
+		this.etag = values.get("etag");
+		this.lastModified = values.get("last-modified");
+		boolean same = this.checksum.equals(values.get("sha1"));
+		// Only bytes the journal vouches for are kept, anything after them may not have reached the disk.
+		long offset = Math.min(bytes, Files.size(this.part));
+		if (!same || (this.etag == null && this.lastModified == null) || offset <= 0L)
+		{
+			discard();
+			return 0L;
+		}
+		return offset;
+	}
+	
+	private void writeJournal(long bytes) throws IOException
+	{
+		StringBuilder buf = new StringBuilder();
+		buf.append("url\t").append(this.url).append('\n');
+		buf.append("sha1\t").append(this.checksum).append('\n');
+		if (this.etag != null)
+			buf.append("etag\t").append(this.etag).append('\n');
+		if (this.lastModified != null)
+			buf.append("last-modified\t").append(this.lastModified).append('\n');
+		buf.append("bytes\t").append(bytes).append('\n');
+		Path temp = Files.createTempFile(this.journal.getParent(), this.journal.getFileName().toString(), ".tmp");
+		try
+		{
+			Files.write(temp, buf.toString().getBytes(StandardCharsets.UTF_8));
+			try
+			{
+				Files.move(temp, this.journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp, this.journal, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	private void hash(MessageDigest digest, long length) throws IOException
+	{
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(this.part)))
+		{
+			byte[] buffer = new byte[65536];
+			long remaining = length;
+			while (remaining > 0L)
+			{
+				int len = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (len == -1)
+					throw new EOFException("Partial download shrank: " + this.part);
+				digest.update(buffer, 0, len);
+				remaining -= len;
+			}
+		}
+	}
+	
+	private void commit() throws IOException
+	{
+		try
+		{
+			Files.move(this.part, this.target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(this.part, this.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private void discard() throws IOException
+	{
+		Files.deleteIfExists(this.journal);
+		Files.deleteIfExists(this.part);
+		this.etag = null;
+		this.lastModified = null;
+	}
+	
+	private long partLength()
+	{
+		try
+		{
+			return Files.size(this.part);
+		} catch (IOException e)
+		{
+			return 0L;
+		}
+	}
+	
+	// The first byte of a 206 response, -1 if it has no usable Content-Range.
+	private static long getRangeStart(HttpResponse<?> response)
+	{
+		List<String> ranges = response.headers().allValues("Content-Range");
+		if (ranges.size() != 1 || !ranges.get(0).startsWith("bytes "))
+			return -1L;
+		String range = ranges.get(0);
+		int dash = range.indexOf('-');
+		if (dash == -1)
+			return -1L;
+		try
+		{
+			return Long.parseLong(range.substring(6, dash).trim());
+		} catch (NumberFormatException e)
+		{
+			return -1L;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package chase.minecraft.ForgeWrapper.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+// Fetches a large file of known size as SEGMENTS byte ranges at once, each written at its offset into a preallocated
+// file. On high latency links one stream can't fill the pipe, a few of them can. The first range request doubles as
+// the check that the server supports ranges, if it answers with the whole file the caller falls back to one stream.
+// The SHA-1 is computed over the assembled file, the target is only replaced when it matches.
+public class SegmentedDownload
+{
+	public static long THRESHOLD = 16L * 1024L * 1024L;
+	
+	public static int SEGMENTS = 4;
+	
+	private static final long MIN_SEGMENT = 4L * 1024L * 1024L;
+	
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory()
+	{
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "download-segment-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	public static boolean accepts(long size)
+	{
+		return SEGMENTS > 1 && size >= THRESHOLD;
+	}
+	
+	// Returns the SHA-1 of the downloaded file, or null when the server doesn't support ranges for it or a segment
+	// failed, the caller then downloads it as one stream.
+	public static String fetch(String url, File target, String checksum, long size, LongConsumer progress, Duration timeout) throws IOException
+	{
+		int count = (int) Math.max(1L, Math.min(SEGMENTS, size / MIN_SEGMENT));
+		long length = (size + count - 1) / count;
+		HttpResponse<InputStream> first = send(url, 0L, Math.min(length, size) - 1L, null, timeout);
+		if (first == null)
+			return null;
+		// Closed on every way out, anything below can fail before the first segment is read.
+		try (InputStream head = first.body())
+		{
+			if (first.statusCode() != 206 || getTotal(first) != size)
+				return null;
+			String validator = first.headers().firstValue("ETag").filter(e -> !e.startsWith("W/")).orElse(first.headers().firstValue("Last-Modified").orElse(null));
+			File parent = target.getAbsoluteFile().getParentFile();
+			Files.createDirectories(parent.toPath());
+			Path temp = Files.createTempFile(parent.toPath(), target.getName() + ".", ".seg");
+			List<Future<?>> futures = new ArrayList<>();
+			// The segment threads are shared, they use the limits of the install that started the download.
+			RateLimiter network = RateLimiter.network();
+			RateLimiter disk = RateLimiter.disk();
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.READ))
+			{
+				// Preallocate so the segments only ever write inside the file.
+				channel.write(ByteBuffer.allocate(1), size - 1L);
+				AtomicLong total = new AtomicLong();
+				AtomicLong report = new AtomicLong(DownloadUtils.PROGRESS_INTERVAL);
+				LongConsumer written = len ->
+				{
+					long now = total.addAndGet(len);
+					long next = report.get();
+					if (progress != null && now >= next && report.compareAndSet(next, now + DownloadUtils.PROGRESS_INTERVAL))
+						progress.accept(now);
+				};
+				for (int x = 1; x < count; x++)
+				{
+					long start = x * length;
+					long end = Math.min(start + length, size) - 1L;
+					if (start > end)
+						break;
+					futures.add(EXECUTOR.submit(() ->
+					{
+						HttpResponse<InputStream> response = send(url, start, end, validator, timeout);
+						if (response == null)
+							throw new IOException("No response for bytes " + start + "-" + end);
+						if (response.statusCode() != 206 || getStart(response) != start)
+						{
+							response.body().close();
+							throw new IOException("Server didn't honor bytes " + start + "-" + end);
+						}
+						copy(response.body(), channel, start, end, written, network, disk);
+						return null;
+					}));
+				}
+				copy(head, channel, 0L, Math.min(length, size) - 1L, written, network, disk);
+				for (Future<?> future : futures)
+					future.get();
+				if (progress != null)
+					progress.accept(total.get());
+				channel.force(false);
+			} catch (ExecutionException e)
+			{
+				System.out.println("Segmented download of " + url + " failed, retrying as one stream: " + e.getCause().getMessage());
+				Files.deleteIfExists(temp);
+				return null;
+			} catch (InterruptedIOException e)
+			{
+				Files.deleteIfExists(temp);
+				throw e;
+			} catch (IOException e)
+			{
+				System.out.println("Segmented download of " + url + " failed, retrying as one stream: " + e.getMessage());
+				Files.deleteIfExists(temp);
+				return null;
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				Files.deleteIfExists(temp);
+				throw new InterruptedIOException("Download of " + url + " interrupted");
+			} finally
+			{
+				for (Future<?> future : futures)
+					future.cancel(true);
+			}
+			try
+			{
+				String sha1 = HashFunction.SHA1.hash(temp);
+				if (checksum == null || checksum.isEmpty() || checksum.equals(sha1))
+				{
+					try
+					{
+						Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+					} catch (AtomicMoveNotSupportedException e)
+					{
+						Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					}
+					ChecksumCache.record(target, sha1);
+				}
+				return sha1;
+			} finally
+			{
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+	
+	private static HttpResponse<InputStream> send(String url, long start, long end, String validator, Duration timeout)
+	{
+		HttpRequest.Builder request;
+		try
+		{
+			request = HttpTransport.request(url).header("Range", "bytes=" + start + "-" + end);
+		} catch (IllegalArgumentException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		if (validator != null)
+			request.header("If-Range", validator);
+		if (timeout != null)
+			request.timeout(timeout);
+		return HttpTransport.send(request.build());
+	}
+	
+	// Positional writes, the segments share the channel without sharing a file position.
+	private static void copy(InputStream input, FileChannel channel, long start, long end, LongConsumer written, RateLimiter network, RateLimiter disk) throws IOException
+	{
+		try (InputStream in = input)
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(65536);
+			byte[] array = buffer.array();
+			long position = start;
+			int len;
+			while ((len = in.read(array)) != -1)
+			{
+				if (position + len > end + 1L)
+					throw new IOException("Server sent more than bytes " + start + "-" + end);
+				buffer.clear().limit(len);
+				while (buffer.hasRemaining())
+					position += channel.write(buffer, position);
+				RateLimiter.acquire(network, len);
+				RateLimiter.acquire(disk, len);
+				written.accept(len);
+				if (Thread.currentThread().isInterrupted())
+					throw new InterruptedIOException();
+			}
+			if (position != end + 1L)
+				throw new IOException("Connection closed at " + position + " of bytes " + start + "-" + end);
+		}
+	}
+	
+	private static long getStart(HttpResponse<?> response)
+	{
+		String range = response.headers().firstValue("Content-Range").orElse("");
+		int dash = range.indexOf('-');
+		if (!range.startsWith("bytes ") || dash == -1)
+			return -1L;
+		try
+		{
+			return Long.parseLong(range.substring(6, dash).trim());
+		} catch (NumberFormatException e)
+		{
+			return -1L;
+		}
+	}
+	
+	private static long getTotal(HttpResponse<?> response)
+	{
+		String range = response.headers().firstValue("Content-Range").orElse("");
+		int slash = range.lastIndexOf('/');
+		if (slash == -1)
+			return -1L;
+		try
+		{
+			return Long.parseLong(range.substring(slash + 1).trim());
+		} catch (NumberFormatException e)
+		{
+			return -1L;
+		}
+	}
+}
@@ -8,7 +8,6 @@ import javax.swing.*;
 import java.io.*;
 import java.net.URL;
 import java.util.Locale;
-import java.util.regex.Pattern;
 
 public class SimpleInstaller
 {
@@ -38,9 +37,9 @@ public class SimpleInstaller
 		} catch (Exception ignored)
 		{
 		}
-		try
+		try (InstallerArchive archive = InstallerArchive.open(installer))
 		{
-			InstallV1 profile = Util.loadInstallProfile(installer);
+			InstallV1 profile = Util.loadInstallProfile(archive);
 //			InstallerPanel panel = new InstallerPanel(getMCDir(), profile, installer);
 //			panel.run(monitor);
 		
@@ -65,33 +64,4 @@ public class SimpleInstaller
 		}
 		return new BufferedOutputStream(new FileOutputStream(output));
 	}
-	
-	static void hookStdOut(final ProgressCallback monitor)
-	{
-		final Pattern endingWhitespace = Pattern.compile("\\r?\\n$");
-		OutputStream monitorStream = new OutputStream()
-		{
-			public void write(byte[] buf, int off, int len)
-			{
-				byte[] toWrite = new byte[len];
-				System.arraycopy(buf, off, toWrite, 0, len);
-				write(toWrite);
-			}
-			
-			public void write(byte[] b)
-			{
-				String toWrite = new String(b);
-				toWrite = endingWhitespace.matcher(toWrite).replaceAll("");
-				if (!toWrite.isEmpty())
-					monitor.message(toWrite);
-			}
-			
-			public void write(int b)
-			{
-				write(new byte[]{(byte) b});
-			}
-		};
-		System.setOut(new PrintStream(monitorStream));
-		System.setErr(new PrintStream(monitorStream));
-	}
 }
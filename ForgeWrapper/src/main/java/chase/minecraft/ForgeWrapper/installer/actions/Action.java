@@ -3,10 +3,20 @@ package chase.minecraft.ForgeWrapper.installer.actions;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import javax.swing.JOptionPane;
+import chase.minecraft.ForgeWrapper.installer.ArchiveExtractor;
 import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
+import chase.minecraft.ForgeWrapper.installer.LibraryDownloader;
+import chase.minecraft.ForgeWrapper.installer.LibraryStore;
 import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
 import chase.minecraft.ForgeWrapper.installer.json.Artifact;
 import chase.minecraft.ForgeWrapper.installer.json.Install;
@@ -19,17 +29,20 @@ public abstract class Action {
   
   protected final ProgressCallback monitor;
   
+  protected final InstallerArchive archive;
+  
   protected final PostProcessors processors;
   
   protected final Version version;
   
-  private List<Artifact> grabbed = new ArrayList<>();
+  private List<Artifact> grabbed = Collections.synchronizedList(new ArrayList<>());
   
-  protected Action(InstallV1 profile, ProgressCallback monitor, boolean isClient) {
+  protected Action(InstallV1 profile, InstallerArchive archive, ProgressCallback monitor, boolean isClient) {
     this.profile = profile;
+    this.archive = archive;
     this.monitor = monitor;
-    this.processors = new PostProcessors(profile, isClient, monitor);
-    this.version = Util.loadVersion((Install)profile);
+    this.processors = new PostProcessors(profile, archive, isClient, monitor);
+    this.version = Util.loadVersion(archive, (Install)profile);
   }
   
   protected void error(String message) {
@@ -51,6 +64,17 @@ public abstract class Action {
   }
   
   protected boolean downloadLibraries(File librariesDir, Predicate<String> optionals, List<File> additionalLibDirs) throws ActionCanceledException {
+    this.monitor.phaseStart("libraries");
+    boolean success = false;
+    try {
+      success = fetchLibraries(librariesDir, optionals, additionalLibDirs);
+      return success;
+    } finally {
+      this.monitor.phaseEnd("libraries", success);
+    } 
+  }
+  
+  private boolean fetchLibraries(File librariesDir, Predicate<String> optionals, List<File> additionalLibDirs) throws ActionCanceledException {
     this.monitor.start("Downloading libraries");
     String userHome = System.getProperty("user.home");
     if (userHome != null && !userHome.isEmpty()) {
@@ -62,16 +86,30 @@ public abstract class Action {
     List<Version.Library> libraries = new ArrayList<>();
     libraries.addAll(Arrays.asList(this.version.getLibraries()));
     libraries.addAll(Arrays.asList(this.processors.getLibraries()));
+    if (!extractLibraries(librariesDir, optionals, libraries))
+      return false; 
     StringBuilder output = new StringBuilder();
     double steps = libraries.size();
-    int progress = 1;
-    for (Version.Library lib : libraries) {
-      checkCancel();
-      this.monitor.progress(progress++ / steps);
-      if (!DownloadUtils.downloadLibrary(this.monitor, this.profile.getMirror(), lib, librariesDir, optionals, this.grabbed, additionalLibDirs)) {
-        Version.LibraryDownload download = (lib.getDownloads() == null) ? null : lib.getDownloads().getArtifact();
-        if (download != null && !download.getUrl().isEmpty())
-          output.append('\n').append(lib.getName()); 
+    AtomicInteger progress = new AtomicInteger();
+    try (LibraryDownloader downloader = new LibraryDownloader(this.monitor, this.archive, this.profile.getMirror(), librariesDir, optionals, this.grabbed, additionalLibDirs)) {
+      List<CompletableFuture<Boolean>> results = downloader.downloadAll(libraries, () -> this.monitor.progress(progress.incrementAndGet() / steps));
+      for (int x = 0; x < libraries.size(); x++) {
+        checkCancel();
+        Version.Library lib = libraries.get(x);
+        boolean success;
+        try {
+          success = results.get(x).get();
+        } catch (InterruptedException e) {
+          throw new ActionCanceledException(e);
+        } catch (ExecutionException e) {
+          e.getCause().printStackTrace();
+          success = false;
+        } 
+        if (!success) {
+          Version.LibraryDownload download = (lib.getDownloads() == null) ? null : lib.getDownloads().getArtifact();
+          if (download != null && !download.getUrl().isEmpty())
+            output.append('\n').append(lib.getName()); 
+        } 
       } 
     } 
     String bad = output.toString();
@@ -82,6 +120,41 @@ public abstract class Action {
     return true;
   }
   
+  // Libraries embedded in the installer under /maven/ are inflated in one parallel pass before downloading, the
+  // download step then only has to validate them.
+  private boolean extractLibraries(File librariesDir, Predicate<String> optionals, List<Version.Library> libraries) throws ActionCanceledException {
+    ArchiveExtractor extractor = new ArchiveExtractor(this.archive);
+    LibraryStore store = LibraryStore.get();
+    Map<String, Version.Library> entries = new HashMap<>();
+    for (Version.Library lib : libraries) {
+      Artifact artifact = lib.getName();
+      String entry = "maven/" + artifact.getPath();
+      File target = artifact.getLocalPath(librariesDir);
+      if (!optionals.test(artifact.getDescriptor()) || target.exists() || !this.archive.contains(entry))
+        continue; 
+      Version.LibraryDownload download = (lib.getDownloads() == null) ? null : lib.getDownloads().getArtifact();
+      if (store != null && download != null && download.getSha1() != null && store.contains(download.getSha1()))
+        continue; 
+      extractor.add(entry, target, (download == null) ? null : download.getSha1());
+      entries.put(entry, lib);
+    } 
+    if (extractor.isEmpty())
+      return true; 
+    this.monitor.message(String.format("Extracting %d libraries from installer", new Object[] { Integer.valueOf(entries.size()) }));
+    try {
+      for (String entry : extractor.run(this.monitor)) {
+        Version.Library lib = entries.get(entry);
+        Version.LibraryDownload download = (lib.getDownloads() == null) ? null : lib.getDownloads().getArtifact();
+        if (download != null && download.getSha1() != null)
+          DownloadUtils.share(lib.getName().getLocalPath(librariesDir), download.getSha1()); 
+        this.grabbed.add(lib.getName());
+      } 
+    } catch (InterruptedException e) {
+      throw new ActionCanceledException(e);
+    } 
+    return true;
+  }
+  
   protected int downloadedCount() {
     return this.grabbed.size();
   }
@@ -1,8 +1,8 @@
 package chase.minecraft.ForgeWrapper.installer.actions;
 
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
 import chase.minecraft.ForgeWrapper.installer.json.InstallV1;
 
-import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 public enum Actions
@@ -13,11 +13,11 @@ public enum Actions
 	
 	private String tooltip;
 	
-	private BiFunction<InstallV1, ProgressCallback, Action> action;
+	private Factory action;
 	
 	private Supplier<String> success;
 	
-	Actions(String label, String tooltip, BiFunction<InstallV1, ProgressCallback, Action> action, Supplier<String> success)
+	Actions(String label, String tooltip, Factory action, Supplier<String> success)
 	{
 		this.label = label;
 		this.tooltip = tooltip;
@@ -40,8 +40,14 @@ public enum Actions
 		return this.success.get();
 	}
 	
-	public Action getAction(InstallV1 profile, ProgressCallback monitor)
+	public Action getAction(InstallV1 profile, InstallerArchive archive, ProgressCallback monitor)
 	{
-		return this.action.apply(profile, monitor);
+		return this.action.create(profile, archive, monitor);
+	}
+	
+	@FunctionalInterface
+	private interface Factory
+	{
+		Action create(InstallV1 profile, InstallerArchive archive, ProgressCallback monitor);
 	}
 }
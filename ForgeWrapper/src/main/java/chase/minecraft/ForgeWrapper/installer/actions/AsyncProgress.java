@@ -0,0 +1,288 @@
+package chase.minecraft.ForgeWrapper.installer.actions;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Takes logging off the install threads. Callbacks are queued in a bounded ring buffer and replayed on the delegate by
+// a background writer, which flushes the output once per batch instead of once per message. Progress updates are
+// coalesced to at most one every PROGRESS_INTERVAL milliseconds, and LOW messages are dropped before they are queued
+// (or even built, see ProgressCallback.message(Supplier, MessagePriority)) unless verbose. Every callback is stamped
+// with the time it was queued, so sinks that record times (JsonProgress) don't see when the writer got to it.
+public class AsyncProgress implements ProgressCallback, AutoCloseable
+{
+	public static int CAPACITY = 8192;
+	
+	public static long PROGRESS_INTERVAL = 100L;
+	
+	private final ProgressCallback delegate;
+	
+	private final Flushable output;
+	
+	private final boolean verbose;
+	
+	private final Consumer<ProgressCallback>[] ring;
+	
+	private final long[] times;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private final Condition notEmpty = this.lock.newCondition();
+	
+	private final Condition notFull = this.lock.newCondition();
+	
+	private final Thread writer;
+	
+	private int head = 0;
+	
+	private int size = 0;
+	
+	private double pending = Double.NaN;
+	
+	private long pendingTime = 0L;
+	
+	private long lastProgress = 0L;
+	
+	private boolean closed = false;
+	
+	@SuppressWarnings("unchecked")
+	public AsyncProgress(ProgressCallback delegate, Flushable output, boolean verbose)
+	{
+		this.delegate = delegate;
+		this.output = output;
+		this.verbose = verbose;
+		this.ring = (Consumer<ProgressCallback>[]) new Consumer<?>[Math.max(16, CAPACITY)];
+		this.times = new long[this.ring.length];
+		this.writer = new Thread(this::write, "progress-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+	
+	public boolean isLoggable(MessagePriority priority)
+	{
+		return (priority != MessagePriority.LOW || this.verbose) && this.delegate.isLoggable(priority);
+	}
+	
+	public void start(String label)
+	{
+		enqueue(cb -> cb.start(label), false);
+	}
+	
+	public void stage(String message)
+	{
+		enqueue(cb -> cb.stage(message), false);
+	}
+	
+	public void message(String message, MessagePriority priority)
+	{
+		if (isLoggable(priority))
+			enqueue(cb -> cb.message(message, priority), false);
+	}
+	
+	public void progress(double progress)
+	{
+		this.lock.lock();
+		try
+		{
+			boolean idle = Double.isNaN(this.pending);
+			this.pending = progress;
+			this.pendingTime = System.nanoTime();
+			if (idle)
+				this.notEmpty.signal();
+		} finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	public void phaseStart(String phase)
+	{
+		enqueue(cb -> cb.phaseStart(phase), true);
+	}
+	
+	public void phaseEnd(String phase, boolean success)
+	{
+		enqueue(cb -> cb.phaseEnd(phase, success), true);
+	}
+	
+	public void artifact(String artifact, ArtifactState state, long bytes)
+	{
+		enqueue(cb -> cb.artifact(artifact, state, bytes), false);
+	}
+	
+	public void processorStart(int index, String name)
+	{
+		enqueue(cb -> cb.processorStart(index, name), false);
+	}
+	
+	public void processorEnd(int index, String name, boolean success, long nanos)
+	{
+		enqueue(cb -> cb.processorEnd(index, name, success, nanos), false);
+	}
+	
+	// Drains everything queued so far and stops the writer.
+	public void close()
+	{
+		this.lock.lock();
+		try
+		{
+			this.closed = true;
+			this.notEmpty.signal();
+			this.notFull.signalAll();
+		} finally
+		{
+			this.lock.unlock();
+		}
+		boolean interrupted = false;
+		while (this.writer.isAlive())
+		{
+			try
+			{
+				this.writer.join();
+			} catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	// A phase boundary settles the progress of the phase before it, the last update is never coalesced away.
+	private void enqueue(Consumer<ProgressCallback> event, boolean settleProgress)
+	{
+		double progress = Double.NaN;
+		long progressTime = 0L;
+		this.lock.lock();
+		try
+		{
+			// Install threads are interrupted to cancel them, that must not lose their last messages.
+			while (this.size + 2 > this.ring.length && !this.closed)
+				this.notFull.awaitUninterruptibly();
+			if (settleProgress && !Double.isNaN(this.pending))
+			{
+				progress = this.pending;
+				progressTime = this.pendingTime;
+				this.pending = Double.NaN;
+				this.lastProgress = System.nanoTime();
+			}
+			if (!this.closed)
+			{
+				if (!Double.isNaN(progress))
+				{
+					double settled = progress;
+					push(cb -> cb.progress(settled), progressTime);
+				}
+				push(event, System.nanoTime());
+				this.notEmpty.signal();
+				return;
+			}
+		} finally
+		{
+			this.lock.unlock();
+		}
+		// Late callbacks after close go straight to the delegate.
+		if (!Double.isNaN(progress))
+		{
+			this.delegate.timestamp(progressTime);
+			this.delegate.progress(progress);
+		}
+		event.accept(this.delegate);
+	}
+	
+	private void push(Consumer<ProgressCallback> event, long time)
+	{
+		int index = (this.head + this.size) % this.ring.length;
+		this.ring[index] = event;
+		this.times[index] = time;
+		this.size++;
+	}
+	
+	private void write()
+	{
+		List<Consumer<ProgressCallback>> batch = new ArrayList<>();
+		long[] batchTimes = new long[this.ring.length];
+		long interval = TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL);
+		while (true)
+		{
+			double progress = Double.NaN;
+			long progressTime = 0L;
+			boolean done;
+			this.lock.lock();
+			try
+			{
+				while (this.size == 0 && !this.closed)
+				{
+					if (!Double.isNaN(this.pending))
+					{
+						long wait = this.lastProgress + interval - System.nanoTime();
+						if (wait <= 0L)
+							break;
+						this.notEmpty.awaitNanos(wait);
+					} else
+					{
+						this.notEmpty.await();
+					}
+				}
+				while (this.size > 0)
+				{
+					batchTimes[batch.size()] = this.times[this.head];
+					batch.add(this.ring[this.head]);
+					this.ring[this.head] = null;
+					this.head = (this.head + 1) % this.ring.length;
+					this.size--;
+				}
+				this.notFull.signalAll();
+				if (!Double.isNaN(this.pending) && (this.closed || System.nanoTime() - this.lastProgress >= interval))
+				{
+					progress = this.pending;
+					progressTime = this.pendingTime;
+					this.pending = Double.NaN;
+					this.lastProgress = System.nanoTime();
+				}
+				done = this.closed && this.size == 0 && Double.isNaN(this.pending);
+			} catch (InterruptedException e)
+			{
+				return;
+			} finally
+			{
+				this.lock.unlock();
+			}
+			for (int i = 0; i < batch.size(); i++)
+			{
+				try
+				{
+					this.delegate.timestamp(batchTimes[i]);
+					batch.get(i).accept(this.delegate);
+				} catch (RuntimeException e)
+				{
+					e.printStackTrace();
+				}
+			}
+			// Progress is written after the batch, keep the times in order if an event was queued after the update.
+			if (!Double.isNaN(progress))
+			{
+				this.delegate.timestamp(batch.isEmpty() ? progressTime : Math.max(progressTime, batchTimes[batch.size() - 1]));
+				this.delegate.progress(progress);
+			}
+			batch.clear();
+			if (this.output != null)
+			{
+				try
+				{
+					this.output.flush();
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+			if (done)
+				return;
+		}
+	}
+}
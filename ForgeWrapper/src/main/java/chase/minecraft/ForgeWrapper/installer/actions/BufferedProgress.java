@@ -0,0 +1,75 @@
+package chase.minecraft.ForgeWrapper.installer.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Collects the messages of a single unit of work (a library, a processor) so work running concurrently doesn't
+// interleave in the log. The messages are forwarded to the parent as one block by flush().
+public class BufferedProgress implements ProgressCallback
+{
+	private final ProgressCallback parent;
+	
+	private final List<Object[]> messages = new ArrayList<>();
+	
+	public BufferedProgress(ProgressCallback parent)
+	{
+		this.parent = parent;
+	}
+	
+	public synchronized void stage(String message)
+	{
+		this.messages.add(new Object[]{message, null});
+	}
+	
+	public synchronized void message(String message, MessagePriority priority)
+	{
+		if (this.parent.isLoggable(priority))
+			this.messages.add(new Object[]{message, priority});
+	}
+	
+	public boolean isLoggable(MessagePriority priority)
+	{
+		return this.parent.isLoggable(priority);
+	}
+	
+	// Structured events carry their own identity, they are forwarded right away so their timestamps stay accurate.
+	public void phaseStart(String phase)
+	{
+		this.parent.phaseStart(phase);
+	}
+	
+	public void phaseEnd(String phase, boolean success)
+	{
+		this.parent.phaseEnd(phase, success);
+	}
+	
+	public void artifact(String artifact, ArtifactState state, long bytes)
+	{
+		this.parent.artifact(artifact, state, bytes);
+	}
+	
+	public void processorStart(int index, String name)
+	{
+		this.parent.processorStart(index, name);
+	}
+	
+	public void processorEnd(int index, String name, boolean success, long nanos)
+	{
+		this.parent.processorEnd(index, name, success, nanos);
+	}
+	
+	public synchronized void flush()
+	{
+		synchronized (this.parent)
+		{
+			for (Object[] message : this.messages)
+			{
+				if (message[1] == null)
+					this.parent.stage((String) message[0]);
+				else
+					this.parent.message((String) message[0], (MessagePriority) message[1]);
+			}
+		}
+		this.messages.clear();
+	}
+}
@@ -1,7 +1,7 @@
 package chase.minecraft.ForgeWrapper.installer.actions;
 
-import chase.minecraft.ForgeWrapper.Main;
 import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
 import chase.minecraft.ForgeWrapper.installer.json.InstallV1;
 import chase.minecraft.ForgeWrapper.installer.json.Util;
 import chase.minecraft.ForgeWrapper.installer.json.Version;
@@ -10,20 +10,16 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import java.io.*;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.CopyOption;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.function.Predicate;
 
 public class ClientInstall extends Action
 {
-	public ClientInstall(InstallV1 profile, ProgressCallback monitor)
+	public ClientInstall(InstallV1 profile, InstallerArchive archive, ProgressCallback monitor)
 	{
-		super(profile, monitor, true);
+		super(profile, archive, monitor, true);
 	}
 	
 	public boolean run(File target, Predicate<String> optionals, File installer) throws ActionCanceledException
@@ -45,24 +41,16 @@ public class ClientInstall extends Action
 		librariesDir.mkdir();
 		checkCancel();
 		this.monitor.stage("Extracting json");
-		try (URLClassLoader classLoader = URLClassLoader.newInstance(new URL[]{Main.installer.toURI().toURL()}))
+		try
 		{
-			String path = profile.getJson();
-			path = path.substring(1);
-			try (InputStream stream = classLoader.getResourceAsStream(path))
-			{
-				File json = new File(versionRoot, this.profile.getVersion() + '/' + this.profile.getVersion() + ".json");
-				json.getParentFile().mkdirs();
-				Files.copy(stream, json.toPath(), new CopyOption[]{StandardCopyOption.REPLACE_EXISTING});
-			} catch (IOException e)
-			{
-				error("  Failed to extract");
-				e.printStackTrace();
-				return false;
-			}
-		} catch (Exception e)
+			File json = new File(versionRoot, this.profile.getVersion() + '/' + this.profile.getVersion() + ".json");
+			json.getParentFile().mkdirs();
+			Files.write(json.toPath(), this.version.getSource());
+		} catch (IOException e)
 		{
+			error("  Failed to extract");
 			e.printStackTrace();
+			return false;
 		}
 		checkCancel();
 		this.monitor.stage("Considering minecraft client jar");
@@ -80,25 +68,11 @@ public class ClientInstall extends Action
 		File clientTarget = new File(versionVanilla, this.profile.getMinecraft() + ".jar");
 		if (!clientTarget.exists())
 		{
-			File versionJson = new File(versionVanilla, this.profile.getMinecraft() + ".json");
-			Version vanilla = Util.getVanillaVersion(this.profile.getMinecraft(), versionJson);
-			if (vanilla == null)
-			{
-				error("Failed to download version manifest, can not find client jar URL.");
-				return false;
-			}
-			Version.Download client = vanilla.getDownload("client");
-			if (client == null)
-			{
-				error("Failed to download minecraft client, info missing from manifest: " + versionJson);
-				return false;
-			}
-			if (!DownloadUtils.download(this.monitor, this.profile.getMirror(), client, clientTarget))
-			{
-				clientTarget.delete();
-				error("Downloading minecraft client failed, invalid checksum.\nTry again, or use the vanilla launcher to install the vanilla version.");
+			this.monitor.phaseStart("minecraft");
+			boolean downloaded = downloadClient(versionVanilla, clientTarget);
+			this.monitor.phaseEnd("minecraft", downloaded);
+			if (!downloaded)
 				return false;
-			}
 		}
 		if (!downloadLibraries(librariesDir, optionals, new ArrayList<>()))
 			return false;
@@ -114,6 +88,30 @@ public class ClientInstall extends Action
 		return true;
 	}
 	
+	private boolean downloadClient(File versionVanilla, File clientTarget)
+	{
+		File versionJson = new File(versionVanilla, this.profile.getMinecraft() + ".json");
+		Version vanilla = Util.getVanillaVersion(this.profile.getMinecraft(), versionJson);
+		if (vanilla == null)
+		{
+			error("Failed to download version manifest, can not find client jar URL.");
+			return false;
+		}
+		Version.Download client = vanilla.getDownload("client");
+		if (client == null)
+		{
+			error("Failed to download minecraft client, info missing from manifest: " + versionJson);
+			return false;
+		}
+		if (!DownloadUtils.download(this.monitor, this.profile.getMirror(), client, clientTarget))
+		{
+			clientTarget.delete();
+			error("Downloading minecraft client failed, invalid checksum.\nTry again, or use the vanilla launcher to install the vanilla version.");
+			return false;
+		}
+		return true;
+	}
+	
 	private boolean injectProfile(File target)
 	{
 		try
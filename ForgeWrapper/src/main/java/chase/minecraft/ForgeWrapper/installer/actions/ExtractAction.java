@@ -2,24 +2,31 @@ package chase.minecraft.ForgeWrapper.installer.actions;
 
 import java.io.File;
 import java.util.function.Predicate;
-import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.ArchiveExtractor;
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
 import chase.minecraft.ForgeWrapper.installer.json.Artifact;
 import chase.minecraft.ForgeWrapper.installer.json.InstallV1;
 
 public class ExtractAction extends Action {
-  public ExtractAction(InstallV1 profile, ProgressCallback monitor) {
-    super(profile, monitor, true);
+  public ExtractAction(InstallV1 profile, InstallerArchive archive, ProgressCallback monitor) {
+    super(profile, archive, monitor, true);
   }
   
-  public boolean run(File target, Predicate<String> optionals, File Installer) {
+  public boolean run(File target, Predicate<String> optionals, File Installer) throws ActionCanceledException {
     boolean result = true;
     String failed = "An error occurred extracting the files:";
     Artifact contained = this.profile.getPath();
     if (contained != null) {
-      File file = new File(target, contained.getFilename());
-      if (!DownloadUtils.extractFile(contained, file, null)) {
-        result = false;
-        failed = failed + "\n" + contained.getFilename();
+      String entry = "maven/" + contained.getPath();
+      ArchiveExtractor extractor = new ArchiveExtractor(this.archive);
+      extractor.add(entry, new File(target, contained.getFilename()), null);
+      try {
+        if (!extractor.run(this.monitor).contains(entry)) {
+          result = false;
+          failed = failed + "\n" + contained.getFilename();
+        } 
+      } catch (InterruptedException e) {
+        throw new ActionCanceledException(e);
       } 
     } 
     if (!result)
@@ -0,0 +1,197 @@
+package chase.minecraft.ForgeWrapper.installer.actions;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Writes every callback as one json object per line, for hosts that track installs instead of reading the log.
+// Every event has "t", the nanoseconds since the sink was created (monotonic) to when the event happened, and
+// "event", one of:
+//   start, stage, message        {"message": ..., "priority": ...}
+//   progress                     {"phase": ..., "fraction": 0.5, "overall": 0.35}
+//   phase_start, phase_end       {"phase": "libraries", "success": true, "nanos": ..., "overall": 0.6}
+//   artifact                     {"artifact": "net/minecraftforge/...jar", "state": "verified", "bytes": 123}
+//   processor_start, processor_end {"index": 0, "processor": "group:name:version", "success": true, "nanos": ...}
+// "fraction" is within the phase, "overall" is across the install, weighing the phases by the share of an install they
+// usually take (progress and phase_end only). Tags given to the constructor (a job or request id) are added to every
+// event. Events are written in the order of their timestamps.
+public class JsonProgress implements ProgressCallback
+{
+	private static final Gson GSON = new Gson();
+	
+	// The phases of an install in the order they run and their share of it. A phase that is skipped (the minecraft jar
+	// is already there) counts as done once a later one starts.
+	private static final List<String> PHASES = List.of("minecraft", "libraries", "processors");
+	
+	private static final double[] WEIGHTS = {0.1, 0.5, 0.4};
+	
+	private final Consumer<String> sink;
+	
+	private final Map<String, String> tags;
+	
+	private final long origin = System.nanoTime();
+	
+	private final Map<String, Long> phases = new HashMap<>();
+	
+	private String phase = null;
+	
+	private double overall = 0.0;
+	
+	private long timestamp;
+	
+	private boolean stamped = false;
+	
+	// Doesn't flush, the caller does (see AsyncProgress).
+	public JsonProgress(Writer output)
+	{
+		this(line ->
+		{
+			try
+			{
+				output.write(line);
+				output.write('\n');
+			} catch (IOException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}, Map.of());
+	}
+	
+	public JsonProgress(Consumer<String> sink, Map<String, String> tags)
+	{
+		this.sink = sink;
+		this.tags = tags;
+	}
+	
+	public synchronized void timestamp(long nanoTime)
+	{
+		this.timestamp = nanoTime;
+		this.stamped = true;
+	}
+	
+	public synchronized void start(String label)
+	{
+		JsonObject json = event("start");
+		json.addProperty("message", label);
+		emit(json);
+	}
+	
+	public synchronized void stage(String message)
+	{
+		JsonObject json = event("stage");
+		json.addProperty("message", message);
+		emit(json);
+	}
+	
+	public synchronized void message(String message, MessagePriority priority)
+	{
+		JsonObject json = event("message");
+		json.addProperty("priority", priority.name().toLowerCase(Locale.ROOT));
+		json.addProperty("message", message);
+		emit(json);
+	}
+	
+	public synchronized void progress(double progress)
+	{
+		JsonObject json = event("progress");
+		if (this.phase != null)
+			json.addProperty("phase", this.phase);
+		json.addProperty("fraction", progress);
+		json.addProperty("overall", advance(this.phase, progress));
+		emit(json);
+	}
+	
+	public synchronized void phaseStart(String phase)
+	{
+		this.phase = phase;
+		JsonObject json = event("phase_start");
+		this.phases.put(phase, json.get("t").getAsLong());
+		json.addProperty("phase", phase);
+		emit(json);
+	}
+	
+	public synchronized void phaseEnd(String phase, boolean success)
+	{
+		JsonObject json = event("phase_end");
+		json.addProperty("phase", phase);
+		json.addProperty("success", success);
+		Long started = this.phases.remove(phase);
+		if (started != null)
+			json.addProperty("nanos", json.get("t").getAsLong() - started);
+		if (success)
+			json.addProperty("overall", "install".equals(phase) ? advance(1.0) : advance(phase, 1.0));
+		else
+			json.addProperty("overall", this.overall);
+		emit(json);
+	}
+	
+	public synchronized void artifact(String artifact, ArtifactState state, long bytes)
+	{
+		JsonObject json = event("artifact");
+		json.addProperty("artifact", artifact);
+		json.addProperty("state", state.name().toLowerCase(Locale.ROOT));
+		if (bytes >= 0L)
+			json.addProperty("bytes", bytes);
+		emit(json);
+	}
+	
+	public synchronized void processorStart(int index, String name)
+	{
+		JsonObject json = event("processor_start");
+		json.addProperty("index", index);
+		json.addProperty("processor", name);
+		emit(json);
+	}
+	
+	public synchronized void processorEnd(int index, String name, boolean success, long nanos)
+	{
+		JsonObject json = event("processor_end");
+		json.addProperty("index", index);
+		json.addProperty("processor", name);
+		json.addProperty("success", success);
+		json.addProperty("nanos", nanos);
+		emit(json);
+	}
+	
+	// Never goes back, a phase's progress may restart when it retries.
+	private double advance(String phase, double fraction)
+	{
+		int index = PHASES.indexOf(phase);
+		if (index == -1)
+			return this.overall;
+		double done = 0.0;
+		for (int x = 0; x < index; x++)
+			done += WEIGHTS[x];
+		return advance(done + WEIGHTS[index] * Math.max(0.0, Math.min(1.0, fraction)));
+	}
+	
+	private double advance(double overall)
+	{
+		this.overall = Math.max(this.overall, overall);
+		return this.overall;
+	}
+	
+	private JsonObject event(String name)
+	{
+		JsonObject json = new JsonObject();
+		long now = this.stamped ? this.timestamp : System.nanoTime();
+		this.stamped = false;
+		json.addProperty("t", now - this.origin);
+		for (Map.Entry<String, String> tag : this.tags.entrySet())
+			json.addProperty(tag.getKey(), tag.getValue());
+		json.addProperty("event", name);
+		return json;
+	}
+	
+	private void emit(JsonObject json)
+	{
+		this.sink.accept(GSON.toJson(json));
+	}
+}
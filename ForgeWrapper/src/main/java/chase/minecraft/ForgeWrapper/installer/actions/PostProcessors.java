@@ -4,31 +4,48 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileAttribute;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import javax.swing.JOptionPane;
+import chase.minecraft.ForgeWrapper.installer.ArchiveExtractor;
 import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
+import chase.minecraft.ForgeWrapper.installer.OutputCapture;
+import chase.minecraft.ForgeWrapper.installer.ProcessorCache;
 import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
 import chase.minecraft.ForgeWrapper.installer.json.Artifact;
 import chase.minecraft.ForgeWrapper.installer.json.Install;
 import chase.minecraft.ForgeWrapper.installer.json.InstallV1;
+import chase.minecraft.ForgeWrapper.installer.json.TokenTemplate;
 import chase.minecraft.ForgeWrapper.installer.json.Util;
 import chase.minecraft.ForgeWrapper.installer.json.Version;
 
 public class PostProcessors {
+  public static int THREADS = Runtime.getRuntime().availableProcessors();
+  
+  // A runtime shared by every install in a long running process, when null each install loads the tools itself.
+  public static ProcessorRuntime RUNTIME = null;
+  
+  // Data values that processors only ever read, they don't order processors that share them.
+  private static final String[] READ_ONLY = new String[] { "SIDE", "MINECRAFT_JAR", "MINECRAFT_VERSION", "ROOT", "INSTALLER", "LIBRARY_DIR" };
+  
   private final InstallV1 profile;
   
+  private final InstallerArchive archive;
+  
   private final boolean isClient;
   
   private final ProgressCallback monitor;
@@ -39,8 +56,15 @@ public class PostProcessors {
   
   private final List<Install.Processor> processors;
   
-  public PostProcessors(InstallV1 profile, boolean isClient, ProgressCallback monitor) {
+  // Where the output of every processor run is written, one file each.
+  private File logDir = null;
+  
+  // Instance specific directories and the placeholders that replace them in processor cache keys, longest first.
+  private final Map<String, String> placeholders = new LinkedHashMap<>();
+  
+  public PostProcessors(InstallV1 profile, InstallerArchive archive, boolean isClient, ProgressCallback monitor) {
     this.profile = profile;
+    this.archive = archive;
     this.isClient = isClient;
     this.monitor = monitor;
     this.processors = profile.getProcessors(isClient ? "client" : "server");
@@ -53,15 +77,27 @@ public class PostProcessors {
   }
   
   public boolean process(File librariesDir, File minecraft, File root, File installer) {
+    this.monitor.phaseStart("processors");
+    boolean success = false;
     try {
+      success = runProcessors(librariesDir, minecraft, root, installer);
+      return success;
+    } finally {
+      this.monitor.phaseEnd("processors", success);
+    } 
+  }
+  
+  private boolean runProcessors(File librariesDir, File minecraft, File root, File installer) {
+    try {
+      Set<String> extractedData = new HashSet<>();
+      Path temp = null;
       if (!this.data.isEmpty()) {
         StringBuilder err = new StringBuilder();
-        Path temp = Files.createTempDirectory("forge_installer", (FileAttribute<?>[])new FileAttribute[0]);
+        temp = Files.createTempDirectory("forge_installer", (FileAttribute<?>[])new FileAttribute[0]);
         this.monitor.start("Created Temporary Directory: " + temp);
-        double steps = this.data.size();
-        int i = 1;
+        ArchiveExtractor extractor = new ArchiveExtractor(this.archive);
+        Map<String, String> extract = new HashMap<>();
         for (String key : this.data.keySet()) {
-          this.monitor.progress(i++ / steps);
           String value = this.data.get(key);
           if (value.charAt(0) == '[' && value.charAt(value.length() - 1) == ']') {
             this.data.put(key, Artifact.from(value.substring(1, value.length() - 1)).getLocalPath(librariesDir).getAbsolutePath());
@@ -73,10 +109,18 @@ public class PostProcessors {
           } 
           File target = Paths.get(temp.toString(), new String[] { value }).toFile();
           this.monitor.message("  Extracting: " + value);
-          if (!DownloadUtils.extractFile(value, target))
-            err.append("\n  ").append(value); 
+          extractor.add(value, target, null);
+          extractedData.add(target.getAbsolutePath());
+          extract.put(value, value.startsWith("/") ? value.substring(1) : value);
           this.data.put(key, target.getAbsolutePath());
         } 
+        if (!extractor.isEmpty()) {
+          Set<String> extracted = extractor.run(this.monitor);
+          for (Map.Entry<String, String> e : extract.entrySet()) {
+            if (!extracted.contains(e.getValue()))
+              err.append("\n  ").append(e.getKey()); 
+          } 
+        } 
         if (err.length() > 0) {
           error("Failed to extract files from archive: " + err.toString());
           return false;
@@ -88,159 +132,336 @@ public class PostProcessors {
       this.data.put("ROOT", root.getAbsolutePath());
       this.data.put("INSTALLER", installer.getAbsolutePath());
       this.data.put("LIBRARY_DIR", librariesDir.getAbsolutePath());
-      int progress = 1;
+      List<String[]> dirs = new ArrayList<>();
+      if (temp != null)
+        dirs.add(new String[] { temp.toFile().getAbsolutePath(), "{TEMP}" }); 
+      dirs.add(new String[] { librariesDir.getAbsolutePath(), "{LIBRARY_DIR}" });
+      dirs.add(new String[] { root.getAbsolutePath(), "{ROOT}" });
+      dirs.sort((a, b) -> b[0].length() - a[0].length());
+      this.placeholders.clear();
+      for (String[] dir : dirs)
+        this.placeholders.put(dir[0], dir[1]); 
+      this.logDir = new File(new File(root, "logs"), "processors");
       if (this.processors.size() == 1) {
         this.monitor.stage("Building Processor");
       } else {
         this.monitor.start("Building Processors");
       } 
-      for (Install.Processor proc : this.processors) {
-        this.monitor.progress(progress++ / this.processors.size());
-        log("===============================================================================");
-        Map<String, String> outputs = new HashMap<>();
-        if (!proc.getOutputs().isEmpty()) {
-          boolean miss = false;
-          log("  Cache: ");
-          for (Map.Entry<String, String> e : (Iterable<Map.Entry<String, String>>)proc.getOutputs().entrySet()) {
-            String key = e.getKey();
-            if (key.charAt(0) == '[' && key.charAt(key.length() - 1) == ']') {
-              key = Artifact.from(key.substring(1, key.length() - 1)).getLocalPath(librariesDir).getAbsolutePath();
-            } else {
-              key = Util.replaceTokens(this.data, key);
-            } 
-            String value = e.getValue();
-            if (value != null)
-              value = Util.replaceTokens(this.data, value); 
-            if (key == null || value == null) {
-              error("  Invalid configuration, bad output config: [" + (String)e.getKey() + ": " + (String)e.getValue() + "]");
-              return false;
-            } 
-            outputs.put(key, value);
-            File artifact = new File(key);
-            if (!artifact.exists()) {
-              log("    " + key + " Missing");
-              miss = true;
-              continue;
-            } 
-            String sha = DownloadUtils.getSha1(artifact);
-            if (sha.equals(value)) {
-              log("    " + key + " Validated: " + value);
-              continue;
-            } 
-            log("    " + key);
-            log("      Expected: " + value);
-            log("      Actual:   " + sha);
-            miss = true;
-            artifact.delete();
+      Set<String> readOnly = new HashSet<>();
+      for (String key : READ_ONLY)
+        readOnly.add(this.data.get(key)); 
+      readOnly.addAll(extractedData);
+      for (Version.Library lib : getLibraries())
+        readOnly.add(lib.getName().getLocalPath(librariesDir).getAbsolutePath()); 
+      ProcessorRuntime runtime = (RUNTIME != null) ? RUNTIME : newRuntime(this.monitor);
+      ProcessorScheduler scheduler = new ProcessorScheduler(this.monitor, THREADS);
+      String[] failures = new String[this.processors.size()];
+      for (int x = 0; x < this.processors.size(); x++) {
+        Install.Processor proc = this.processors.get(x);
+        Map<String, String> outputs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : (Iterable<Map.Entry<String, String>>)proc.getOutputs().entrySet()) {
+          String key = e.getKey();
+          if (key.charAt(0) == '[' && key.charAt(key.length() - 1) == ']') {
+            key = Artifact.from(key.substring(1, key.length() - 1)).getLocalPath(librariesDir).getAbsolutePath();
+          } else {
+            key = Util.replaceTokens(this.data, key);
           } 
-          if (!miss) {
-            log("  Cache Hit!");
-            continue;
+          String value = e.getValue();
+          if (value != null)
+            value = Util.replaceTokens(this.data, value); 
+          if (key == null || value == null) {
+            error("  Invalid configuration, bad output config: [" + (String)e.getKey() + ": " + (String)e.getValue() + "]");
+            return false;
           } 
-        } 
-        File jar = proc.getJar().getLocalPath(librariesDir);
-        if (!jar.exists() || !jar.isFile()) {
-          error("  Missing Jar for processor: " + jar.getAbsolutePath());
-          return false;
-        } 
-        JarFile jarFile = new JarFile(jar);
-        String mainClass = jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
-        jarFile.close();
-        if (mainClass == null || mainClass.isEmpty()) {
-          error("  Jar does not have main class: " + jar.getAbsolutePath());
-          return false;
-        } 
-        this.monitor.message("  MainClass: " + mainClass, ProgressCallback.MessagePriority.LOW);
-        List<URL> classpath = new ArrayList<>();
-        StringBuilder err = new StringBuilder();
-        this.monitor.message("  Classpath:", ProgressCallback.MessagePriority.LOW);
-        this.monitor.message("    " + jar.getAbsolutePath(), ProgressCallback.MessagePriority.LOW);
-        classpath.add(jar.toURI().toURL());
-        for (Artifact dep : proc.getClasspath()) {
-          File lib = dep.getLocalPath(librariesDir);
-          if (!lib.exists() || !lib.isFile())
-            err.append("\n  ").append(dep.getDescriptor()); 
-          classpath.add(lib.toURI().toURL());
-          this.monitor.message("    " + lib.getAbsolutePath(), ProgressCallback.MessagePriority.LOW);
-        } 
-        if (err.length() > 0) {
-          error("  Missing Processor Dependencies: " + err.toString());
-          return false;
+          outputs.put(key, value);
         } 
         List<String> args = new ArrayList<>();
+        Set<String> references = new HashSet<>(outputs.keySet());
         for (String arg : proc.getArgs()) {
           char start = arg.charAt(0);
           char end = arg.charAt(arg.length() - 1);
           if (start == '[' && end == ']') {
-            args.add(Artifact.from(arg.substring(1, arg.length() - 1)).getLocalPath(librariesDir).getAbsolutePath());
-          } else {
-            args.add(Util.replaceTokens(this.data, arg));
-          } 
-        } 
-        if (err.length() > 0) {
-          error("  Missing Processor data values: " + err.toString());
-          return false;
-        } 
-        this.monitor.message("  Args: " + (String)args.stream().map(a -> (a.indexOf(' ') != -1 || a.indexOf(',') != -1) ? ('"' + a + '"') : a).collect(Collectors.joining(", ")), ProgressCallback.MessagePriority.LOW);
-        ClassLoader cl = new URLClassLoader(classpath.<URL>toArray(new URL[classpath.size()]), getParentClassloader());
-        Thread currentThread = Thread.currentThread();
-        ClassLoader threadClassloader = currentThread.getContextClassLoader();
-        currentThread.setContextClassLoader(cl);
-        try {
-          Class<?> cls = Class.forName(mainClass, true, cl);
-          Method main = cls.getDeclaredMethod("main", new Class[] { String[].class });
-          main.invoke(null, new Object[] { args.toArray(new String[args.size()]) });
-        } catch (InvocationTargetException ite) {
-          Throwable e = ite.getCause();
-          e.printStackTrace();
-          if (e.getMessage() == null) {
-            error("Failed to run processor: " + e.getClass().getName() + "\nSee log for more details.");
-          } else {
-            error("Failed to run processor: " + e.getClass().getName() + ":" + e.getMessage() + "\nSee log for more details.");
-          } 
-          return false;
-        } catch (Throwable e) {
-          e.printStackTrace();
-          if (e.getMessage() == null) {
-            error("Failed to run processor: " + e.getClass().getName() + "\nSee log for more details.");
+            String path = Artifact.from(arg.substring(1, arg.length() - 1)).getLocalPath(librariesDir).getAbsolutePath();
+            args.add(path);
+            references.add(path);
           } else {
-            error("Failed to run processor: " + e.getClass().getName() + ":" + e.getMessage() + "\nSee log for more details.");
-          } 
-          return false;
-        } finally {
-          currentThread.setContextClassLoader(threadClassloader);
-        } 
-        if (!outputs.isEmpty()) {
-          for (Map.Entry<String, String> e : outputs.entrySet()) {
-            File artifact = new File(e.getKey());
-            if (!artifact.exists()) {
-              err.append("\n    ").append(e.getKey()).append(" missing");
-              continue;
-            } 
-            String sha = DownloadUtils.getSha1(artifact);
-            if (sha.equals(e.getValue())) {
-              log("  Output: " + (String)e.getKey() + " Checksum Validated: " + sha);
-              continue;
-            } 
-            err.append("\n    ").append(e.getKey())
-              .append("\n      Expected: ").append(e.getValue())
-              .append("\n      Actual:   ").append(sha);
-            if (!SimpleInstaller.debug && !artifact.delete())
-              err.append("\n      Could not delete file"); 
-          } 
-          if (err.length() > 0) {
-            error("  Processor failed, invalid outputs:" + err.toString());
-            return false;
+            TokenTemplate template = TokenTemplate.compile(arg);
+            args.add(template.render(this.data));
+            addTokenReferences(template, references);
           } 
         } 
+        Set<String> writes = new HashSet<>(outputs.isEmpty() ? references : outputs.keySet());
+        if (outputs.isEmpty())
+          writes.removeAll(readOnly); 
+        int index = x;
+        scheduler.add(references, writes, log -> {
+              String name = proc.getJar().getDescriptor();
+              log.processorStart(index, name);
+              long started = System.nanoTime();
+              String failure = null;
+              try {
+                failure = run(runtime, proc, librariesDir, args, outputs, references, writes, getLogFile(index, proc), log);
+              } catch (Exception e) {
+                failure = "Failed to run processor: " + e;
+                throw e;
+              } finally {
+                failures[index] = failure;
+                log.processorEnd(index, name, (failure == null), System.nanoTime() - started);
+              } 
+              return (failure == null);
+            });
+      } 
+      int failed;
+      try {
+        failed = scheduler.run();
+      } finally {
+        if (runtime != RUNTIME)
+          runtime.close(); 
+        this.monitor.message(() -> String.format("Processor runtime: %d class loaders, %d classes loaded", new Object[] { Integer.valueOf(runtime.getLoaderCount()), Integer.valueOf(runtime.getLoadedClassCount()) }), ProgressCallback.MessagePriority.LOW);
+      } 
+      if (failed != -1) {
+        if (!SimpleInstaller.headless && failures[failed] != null)
+          JOptionPane.showMessageDialog(null, failures[failed], "Error", 0); 
+        return false;
       } 
       return true;
     } catch (IOException e) {
       e.printStackTrace();
       return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
     } 
   }
   
+  // Runs a single processor, returns null on success or the error message.
+  private String run(ProcessorRuntime runtime, Install.Processor proc, File librariesDir, List<String> args, Map<String, String> outputs, Set<String> references, Set<String> writes, File logFile, ProgressCallback log) throws IOException {
+    log(log, "===============================================================================");
+    if (!outputs.isEmpty()) {
+      boolean miss = false;
+      log(log, "  Cache: ");
+      Map<String, String> hashes = hashOutputs(outputs.keySet());
+      for (Map.Entry<String, String> e : outputs.entrySet()) {
+        String key = e.getKey();
+        String value = e.getValue();
+        String sha = hashes.get(key);
+        if (sha == null) {
+          log(log, "    " + key + " Missing");
+          miss = true;
+          continue;
+        } 
+        if (sha.equals(value)) {
+          log(log, "    " + key + " Validated: " + value);
+          continue;
+        } 
+        log(log, "    " + key);
+        log(log, "      Expected: " + value);
+        log(log, "      Actual:   " + sha);
+        miss = true;
+        (new File(key)).delete();
+      } 
+      if (!miss) {
+        log(log, "  Cache Hit!");
+        return null;
+      } 
+    } 
+    File jar = proc.getJar().getLocalPath(librariesDir);
+    if (!jar.exists() || !jar.isFile())
+      return fail(log, "  Missing Jar for processor: " + jar.getAbsolutePath()); 
+    String mainClass = runtime.getMainClass(jar);
+    if (mainClass == null || mainClass.isEmpty())
+      return fail(log, "  Jar does not have main class: " + jar.getAbsolutePath()); 
+    log.message(() -> "  MainClass: " + mainClass, ProgressCallback.MessagePriority.LOW);
+    List<File> classpath = new ArrayList<>();
+    StringBuilder err = new StringBuilder();
+    log.message("  Classpath:", ProgressCallback.MessagePriority.LOW);
+    log.message(() -> "    " + jar.getAbsolutePath(), ProgressCallback.MessagePriority.LOW);
+    classpath.add(jar);
+    for (Artifact dep : proc.getClasspath()) {
+      File lib = dep.getLocalPath(librariesDir);
+      if (!lib.exists() || !lib.isFile())
+        err.append("\n  ").append(dep.getDescriptor()); 
+      classpath.add(lib);
+      log.message(() -> "    " + lib.getAbsolutePath(), ProgressCallback.MessagePriority.LOW);
+    } 
+    if (err.length() > 0)
+      return fail(log, "  Missing Processor Dependencies: " + err.toString()); 
+    log.message(() -> "  Args: " + (String)args.stream().map(a -> (a.indexOf(' ') != -1 || a.indexOf(',') != -1) ? ('"' + a + '"') : a).collect(Collectors.joining(", ")), ProgressCallback.MessagePriority.LOW);
+    ProcessorCache cache = ProcessorCache.get();
+    String cacheKey = (cache == null) ? null : getCacheKey(classpath, args, outputs, references);
+    if (cacheKey == null)
+      return invoke(runtime, mainClass, classpath, args, outputs, logFile, log); 
+    // Concurrent installs of the same version wait for the first one to build the outputs and restore them instead.
+    synchronized (cache.lock(cacheKey)) {
+      if (cache.restore(cacheKey, path -> new File(expand(path)))) {
+        String invalid = validateOutputs(outputs, log);
+        if (invalid.isEmpty()) {
+          log(log, "  Restored from processor cache: " + cacheKey);
+          return null;
+        } 
+        log(log, "  Processor cache entry is invalid, running processor:" + invalid);
+      } 
+      String failure = invoke(runtime, mainClass, classpath, args, outputs, logFile, log);
+      if (failure == null) {
+        Map<String, File> stored = getCacheOutputs(outputs, writes);
+        if (stored != null)
+          cache.store(cacheKey, stored); 
+      } 
+      return failure;
+    } 
+  }
+  
+  private static String invoke(ProcessorRuntime runtime, String mainClass, List<File> classpath, List<String> args, Map<String, String> outputs, File logFile, ProgressCallback log) throws IOException {
+    ClassLoader cl = runtime.acquire(classpath);
+    Thread currentThread = Thread.currentThread();
+    ClassLoader threadClassloader = currentThread.getContextClassLoader();
+    currentThread.setContextClassLoader(cl);
+    OutputCapture.Capture output = OutputCapture.begin(logFile);
+    String failure = null;
+    try {
+      Class<?> cls = Class.forName(mainClass, true, cl);
+      Method main = cls.getDeclaredMethod("main", new Class[] { String[].class });
+      main.invoke(null, new Object[] { args.toArray(new String[args.size()]) });
+    } catch (InvocationTargetException ite) {
+      Throwable e = ite.getCause();
+      e.printStackTrace();
+      failure = getFailure(e, logFile);
+    } catch (Throwable e) {
+      e.printStackTrace();
+      failure = getFailure(e, logFile);
+    } finally {
+      output.close(log, (failure == null));
+      currentThread.setContextClassLoader(threadClassloader);
+      runtime.release(cl);
+    } 
+    if (failure != null)
+      return fail(log, failure); 
+    String invalid = validateOutputs(outputs, log);
+    if (!invalid.isEmpty())
+      return fail(log, "  Processor failed, invalid outputs:" + invalid); 
+    return null;
+  }
+  
+  private static String getFailure(Throwable e, File logFile) {
+    if (e.getMessage() == null)
+      return "Failed to run processor: " + e.getClass().getName() + "\nSee " + logFile + " for more details."; 
+    return "Failed to run processor: " + e.getClass().getName() + ":" + e.getMessage() + "\nSee " + logFile + " for more details.";
+  }
+  
+  private File getLogFile(int index, Install.Processor proc) {
+    StringBuilder name = new StringBuilder(String.format("%02d-", new Object[] { Integer.valueOf(index) }));
+    for (char c : proc.getJar().getDescriptor().toCharArray())
+      name.append((Character.isLetterOrDigit(c) || c == '.' || c == '-') ? c : '_'); 
+    return new File(this.logDir, name.append(".log").toString());
+  }
+  
+  // Checks the declared outputs against their expected checksum, returns the problems found or an empty string.
+  private static String validateOutputs(Map<String, String> outputs, ProgressCallback log) {
+    StringBuilder err = new StringBuilder();
+    if (outputs.isEmpty())
+      return ""; 
+    Map<String, String> hashes = hashOutputs(outputs.keySet());
+    for (Map.Entry<String, String> e : outputs.entrySet()) {
+      File artifact = new File(e.getKey());
+      String sha = hashes.get(e.getKey());
+      if (sha == null) {
+        err.append("\n    ").append(e.getKey()).append(" missing");
+        continue;
+      } 
+      if (sha.equals(e.getValue())) {
+        log(log, "  Output: " + (String)e.getKey() + " Checksum Validated: " + sha);
+        continue;
+      } 
+      err.append("\n    ").append(e.getKey())
+        .append("\n      Expected: ").append(e.getValue())
+        .append("\n      Actual:   ").append(sha);
+      if (!SimpleInstaller.debug && !artifact.delete())
+        err.append("\n      Could not delete file"); 
+    } 
+    return err.toString();
+  }
+  
+  // The processor cache key covers everything that decides what a processor produces: the tool and its classpath, the
+  // arguments with the instance directories replaced by placeholders, and the content of every file it references.
+  // Returns null when the processor can't be cached, a referenced directory can't be hashed cheaply.
+  private String getCacheKey(List<File> classpath, List<String> args, Map<String, String> outputs, Set<String> references) {
+    List<String> parts = new ArrayList<>();
+    String sha;
+    for (File lib : classpath) {
+      sha = DownloadUtils.getSha1(lib);
+      if (sha == null)
+        return null; 
+      parts.add("cp=" + sha);
+    } 
+    for (String arg : args)
+      parts.add("arg=" + collapse(arg)); 
+    for (Map.Entry<String, String> e : outputs.entrySet())
+      parts.add("out=" + collapse(e.getKey()) + "=" + e.getValue()); 
+    for (String path : new TreeSet<>(references)) {
+      if (outputs.containsKey(path))
+        continue; 
+      File file = new File(path);
+      if (file.isDirectory())
+        return null; 
+      if (!file.isFile())
+        continue; 
+      sha = DownloadUtils.getSha1(file);
+      if (sha == null)
+        return null; 
+      parts.add("in=" + collapse(path) + "=" + sha);
+    } 
+    return ProcessorCache.key(parts);
+  }
+  
+  // Files to keep in the processor cache after a successful run. Processors that don't declare outputs are cached by
+  // the files they may have written, unless one of those is a directory.
+  private Map<String, File> getCacheOutputs(Map<String, String> outputs, Set<String> writes) {
+    Map<String, File> ret = new LinkedHashMap<>();
+    for (String path : outputs.isEmpty() ? new TreeSet<>(writes) : outputs.keySet()) {
+      File file = new File(path);
+      if (file.isDirectory())
+        return null; 
+      if (file.isFile())
+        ret.put(collapse(path), file); 
+    } 
+    return ret.isEmpty() ? null : ret;
+  }
+  
+  private String collapse(String value) {
+    for (Map.Entry<String, String> e : this.placeholders.entrySet())
+      value = value.replace(e.getKey(), e.getValue()); 
+    return value;
+  }
+  
+  private String expand(String value) {
+    for (Map.Entry<String, String> e : this.placeholders.entrySet())
+      value = value.replace(e.getValue(), e.getKey()); 
+    return value;
+  }
+  
+  // Collects the data values an argument references through {KEY} tokens.
+  private void addTokenReferences(TokenTemplate template, Set<String> references) {
+    for (String key : template.getKeys()) {
+      String value = this.data.get(key);
+      if (value != null)
+        references.add(value); 
+    } 
+  }
+  
+  // Processors can declare several large outputs, hash them in parallel. Missing files have no entry.
+  private static Map<String, String> hashOutputs(Collection<String> paths) {
+    Map<String, String> ret = new ConcurrentHashMap<>();
+    paths.parallelStream().forEach(path -> {
+          File file = new File(path);
+          if (file.exists()) {
+            String sha = DownloadUtils.getSha1(file);
+            if (sha != null)
+              ret.put(path, sha); 
+          } 
+        });
+    return ret;
+  }
+  
   private void error(String message) {
     if (!SimpleInstaller.headless)
       JOptionPane.showMessageDialog(null, message, "Error", 0); 
@@ -248,16 +469,25 @@ public class PostProcessors {
       this.monitor.message(line); 
   }
   
-  private void log(String message) {
+  private static String fail(ProgressCallback log, String message) {
+    log(log, message);
+    return message;
+  }
+  
+  private static void log(ProgressCallback log, String message) {
     for (String line : message.split("\n"))
-      this.monitor.message(line); 
+      log.message(line); 
+  }
+  
+  public static ProcessorRuntime newRuntime(ProgressCallback log) {
+    return new ProcessorRuntime(getParentClassloader(log));
   }
   
   private static boolean clChecked = false;
   
   private static ClassLoader parentClassLoader = null;
   
-  private synchronized ClassLoader getParentClassloader() {
+  private static synchronized ClassLoader getParentClassloader(ProgressCallback log) {
     if (!clChecked) {
       clChecked = true;
       if (!System.getProperty("java.version").startsWith("1."))
@@ -265,7 +495,7 @@ public class PostProcessors {
           Method getPlatform = ClassLoader.class.getDeclaredMethod("getPlatformClassLoader", new Class[0]);
           parentClassLoader = (ClassLoader)getPlatform.invoke(null, new Object[0]);
         } catch (NoSuchMethodException|IllegalAccessException|IllegalArgumentException|InvocationTargetException e) {
-          log("No platform classloader: " + System.getProperty("java.version"));
+          log(log, "No platform classloader: " + System.getProperty("java.version"));
         }  
     } 
     return parentClassLoader;
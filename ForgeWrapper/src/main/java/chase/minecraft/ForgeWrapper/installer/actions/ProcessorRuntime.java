@@ -0,0 +1,164 @@
+package chase.minecraft.ForgeWrapper.installer.actions;
+
+import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.LibraryStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+// Keeps the processor tools loaded between runs. Most installs run the same few jars (installertools, jarsplitter,
+// binarypatcher) several times, so the main class is resolved once per jar and class loaders are pooled by the content
+// of their classpath. That lets a long running process reuse them across instances, the loaders read the jars from the
+// shared store when it has them so they don't hold files of an instance open. A loader is only handed to one
+// processor at a time, concurrent processors with the same classpath get their own loader.
+public class ProcessorRuntime implements AutoCloseable
+{
+	private final ClassLoader parent;
+	
+	private final Map<String, Optional<String>> mainClasses = new ConcurrentHashMap<>();
+	
+	private final Map<List<String>, Deque<CountingClassLoader>> idle = new HashMap<>();
+	
+	private final List<CountingClassLoader> loaders = new ArrayList<>();
+	
+	private boolean closed = false;
+	
+	public ProcessorRuntime(ClassLoader parent)
+	{
+		this.parent = parent;
+	}
+	
+	// Returns null if the jar doesn't declare a main class.
+	public String getMainClass(File jar) throws IOException
+	{
+		String key = getKey(jar);
+		Optional<String> cached = this.mainClasses.get(key);
+		if (cached != null)
+			return cached.orElse(null);
+		String mainClass;
+		try (JarFile jarFile = new JarFile(jar))
+		{
+			mainClass = (jarFile.getManifest() == null) ? null : jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+		}
+		this.mainClasses.put(key, Optional.ofNullable(mainClass));
+		return mainClass;
+	}
+	
+	public ClassLoader acquire(List<File> classpath) throws IOException
+	{
+		List<String> key = new ArrayList<>();
+		List<String> hashes = new ArrayList<>();
+		for (File file : classpath)
+		{
+			String sha1 = DownloadUtils.getSha1(file);
+			hashes.add(sha1);
+			key.add((sha1 == null) ? file.getAbsolutePath() : sha1);
+		}
+		synchronized (this)
+		{
+			if (this.closed)
+				throw new IllegalStateException("Processor runtime is closed");
+			Deque<CountingClassLoader> pool = this.idle.get(key);
+			if (pool != null && !pool.isEmpty())
+				return pool.pop();
+		}
+		URL[] urls = new URL[classpath.size()];
+		LibraryStore store = LibraryStore.get();
+		for (int x = 0; x < urls.length; x++)
+		{
+			String sha1 = hashes.get(x);
+			File file = (store != null && sha1 != null && store.contains(sha1)) ? store.getPath(sha1).toFile() : classpath.get(x);
+			urls[x] = file.toURI().toURL();
+		}
+		CountingClassLoader loader = new CountingClassLoader(key, urls, this.parent);
+		synchronized (this)
+		{
+			if (this.closed)
+			{
+				closeQuietly(loader);
+				throw new IllegalStateException("Processor runtime is closed");
+			}
+			this.loaders.add(loader);
+		}
+		return loader;
+	}
+	
+	public synchronized void release(ClassLoader loader)
+	{
+		if (!(loader instanceof CountingClassLoader))
+			return;
+		CountingClassLoader counting = (CountingClassLoader) loader;
+		if (this.closed)
+		{
+			closeQuietly(counting);
+			return;
+		}
+		this.idle.computeIfAbsent(counting.key, k -> new ArrayDeque<>()).push(counting);
+	}
+	
+	public synchronized int getLoaderCount()
+	{
+		return this.loaders.size();
+	}
+	
+	public synchronized int getLoadedClassCount()
+	{
+		int count = 0;
+		for (CountingClassLoader loader : this.loaders)
+			count += loader.loaded.get();
+		return count;
+	}
+	
+	public synchronized void close()
+	{
+		this.closed = true;
+		for (CountingClassLoader loader : this.loaders)
+			closeQuietly(loader);
+		this.idle.clear();
+	}
+	
+	// Jars are identified by their content, falling back to the path if they can't be hashed.
+	private static String getKey(File jar)
+	{
+		String sha1 = DownloadUtils.getSha1(jar);
+		return (sha1 == null) ? jar.getAbsolutePath() : sha1;
+	}
+	
+	private static void closeQuietly(URLClassLoader loader)
+	{
+		try
+		{
+			loader.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+	
+	private static class CountingClassLoader extends URLClassLoader
+	{
+		private final List<String> key;
+		
+		private final AtomicInteger loaded = new AtomicInteger();
+		
+		private CountingClassLoader(List<String> key, URL[] urls, ClassLoader parent)
+		{
+			super(urls, parent);
+			this.key = key;
+		}
+		
+		protected Class<?> findClass(String name) throws ClassNotFoundException
+		{
+			Class<?> cls = super.findClass(name);
+			this.loaded.incrementAndGet();
+			return cls;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package chase.minecraft.ForgeWrapper.installer.actions;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the post processors as a dependency graph instead of strictly in declaration order.
+// A processor depends on an earlier one when either of them may write a file the other one references, everything
+// else is free to run concurrently. The log of every processor is buffered and flushed in declaration order so the
+// output reads the same no matter how the processors were scheduled.
+class ProcessorScheduler
+{
+	private final ProgressCallback monitor;
+	
+	private final int threads;
+	
+	private final List<Node> nodes = new ArrayList<>();
+	
+	ProcessorScheduler(ProgressCallback monitor, int threads)
+	{
+		this.monitor = monitor;
+		this.threads = Math.max(1, threads);
+	}
+	
+	void add(Set<String> references, Set<String> writes, Job job)
+	{
+		this.nodes.add(new Node(this.nodes.size(), references, writes, job, new BufferedProgress(this.monitor)));
+	}
+	
+	// Returns the index of the first processor that failed, or -1 if all of them succeeded.
+	int run() throws InterruptedException
+	{
+		for (Node node : this.nodes)
+		{
+			for (int x = 0; x < node.index; x++)
+			{
+				Node before = this.nodes.get(x);
+				if (before.conflicts(node))
+				{
+					before.dependents.add(node);
+					node.pending++;
+				}
+			}
+		}
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threads, Math.max(1, this.nodes.size())), r ->
+		{
+			Thread thread = new Thread(r, "processor-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletionService<Node> completion = new ExecutorCompletionService<>(executor);
+		int submitted = 0;
+		int completed = 0;
+		int flushed = 0;
+		int failed = -1;
+		try
+		{
+			for (Node node : this.nodes)
+			{
+				if (node.pending == 0)
+				{
+					completion.submit(node::call);
+					submitted++;
+				}
+			}
+			while (completed < submitted)
+			{
+				Node node;
+				try
+				{
+					node = completion.take().get();
+				} catch (ExecutionException e)
+				{
+					throw new IllegalStateException(e.getCause());
+				}
+				completed++;
+				this.monitor.progress(completed / (double) this.nodes.size());
+				if (!node.success && (failed == -1 || node.index < failed))
+					failed = node.index;
+				while (flushed < this.nodes.size() && this.nodes.get(flushed).done)
+					this.nodes.get(flushed++).log.flush();
+				if (failed != -1)
+					continue;
+				for (Node dependent : node.dependents)
+				{
+					if (--dependent.pending == 0)
+					{
+						completion.submit(dependent::call);
+						submitted++;
+					}
+				}
+			}
+		} finally
+		{
+			executor.shutdownNow();
+		}
+		for (Node node : this.nodes)
+		{
+			if (node.done && node.index >= flushed)
+				node.log.flush();
+		}
+		return failed;
+	}
+	
+	interface Job
+	{
+		boolean run(BufferedProgress log) throws Exception;
+	}
+	
+	private static class Node
+	{
+		private final int index;
+		
+		private final Set<String> references;
+		
+		private final Set<String> writes;
+		
+		private final Job job;
+		
+		private final BufferedProgress log;
+		
+		private final List<Node> dependents = new ArrayList<>();
+		
+		private int pending = 0;
+		
+		private volatile boolean done = false;
+		
+		private volatile boolean success = false;
+		
+		private Node(int index, Set<String> references, Set<String> writes, Job job, BufferedProgress log)
+		{
+			this.index = index;
+			this.references = references;
+			this.writes = writes;
+			this.job = job;
+			this.log = log;
+		}
+		
+		private boolean conflicts(Node other)
+		{
+			return !Collections.disjoint(this.writes, other.references) || !Collections.disjoint(this.references, other.writes);
+		}
+		
+		private Node call()
+		{
+			try
+			{
+				this.success = this.job.run(this.log);
+			} catch (Throwable e)
+			{
+				e.printStackTrace();
+				this.log.message("Failed to run processor: " + e);
+				this.success = false;
+			}
+			this.done = true;
+			return this;
+		}
+	}
+}
@@ -2,12 +2,18 @@ package chase.minecraft.ForgeWrapper.installer.actions;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.util.function.Supplier;
 
 public interface ProgressCallback {
   public enum MessagePriority {
     LOW, NORMAL, HIGH;
   }
   
+  public enum ArtifactState {
+    QUEUED, STARTED, BYTES, VERIFIED, FAILED;
+  }
+  
   default void start(String label) {
     message(label);
   }
@@ -22,8 +28,33 @@ public interface ProgressCallback {
   
   void message(String paramString, MessagePriority paramMessagePriority);
   
+  // Sinks that drop a priority say so, callers can skip building messages nobody will see.
+  default boolean isLoggable(MessagePriority priority) {
+    return true;
+  }
+  
+  default void message(Supplier<String> message, MessagePriority priority) {
+    if (isLoggable(priority))
+      message(message.get(), priority); 
+  }
+  
   default void progress(double progress) {}
   
+  // Structured events for machine readable sinks, text sinks ignore them.
+  default void phaseStart(String phase) {}
+  
+  default void phaseEnd(String phase, boolean success) {}
+  
+  default void artifact(String artifact, ArtifactState state, long bytes) {}
+  
+  default void processorStart(int index, String name) {}
+  
+  default void processorEnd(int index, String name, boolean success, long nanos) {}
+  
+  // The System.nanoTime() the next callback actually happened at, when it is replayed later (see AsyncProgress).
+  // Sinks that record event times use it instead of the time they are called, the rest ignore it.
+  default void timestamp(long nanoTime) {}
+  
   public static final ProgressCallback TO_STD_OUT = new ProgressCallback() {
       public void message(String message, ProgressCallback.MessagePriority priority) {
         System.out.println(message);
@@ -45,4 +76,18 @@ public interface ProgressCallback {
         }
       };
   }
+  
+  // Leaves flushing to the caller, see AsyncProgress.
+  static ProgressCallback withWriter(Writer writer) {
+    return new ProgressCallback() {
+        public void message(String message, ProgressCallback.MessagePriority priority) {
+          try {
+            writer.write(message);
+            writer.write(System.lineSeparator());
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          } 
+        }
+      };
+  }
 }
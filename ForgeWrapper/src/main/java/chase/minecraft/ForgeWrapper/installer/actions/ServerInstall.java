@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.InstallerArchive;
 import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
 import chase.minecraft.ForgeWrapper.installer.json.Artifact;
 import chase.minecraft.ForgeWrapper.installer.json.InstallV1;
@@ -16,8 +17,8 @@ import chase.minecraft.ForgeWrapper.installer.json.Version;
 public class ServerInstall extends Action {
   private List<Artifact> grabbed = new ArrayList<>();
   
-  public ServerInstall(InstallV1 profile, ProgressCallback monitor) {
-    super(profile, monitor, false);
+  public ServerInstall(InstallV1 profile, InstallerArchive archive, ProgressCallback monitor) {
+    super(profile, archive, monitor, false);
   }
   
   public boolean run(File target, Predicate<String> optionals, File installer) throws ActionCanceledException {
@@ -35,7 +36,7 @@ public class ServerInstall extends Action {
     Artifact contained = this.profile.getPath();
     if (contained != null) {
       this.monitor.stage("Extracting main jar:");
-      if (!DownloadUtils.extractFile(contained, new File(target, contained.getFilename()), null)) {
+      if (!DownloadUtils.extractFile(this.archive, contained, new File(target, contained.getFilename()), null)) {
         error("  Failed to extract main jar: " + contained.getFilename());
         return false;
       } 
@@ -50,26 +51,11 @@ public class ServerInstall extends Action {
     String path = Util.replaceTokens(tokens, this.profile.getServerJarPath());
     File serverTarget = new File(path);
     if (!serverTarget.exists()) {
-      File parent = serverTarget.getParentFile();
-      if (!parent.exists())
-        parent.mkdirs(); 
-      File versionJson = new File(target, this.profile.getMinecraft() + ".json");
-      Version vanilla = Util.getVanillaVersion(this.profile.getMinecraft(), versionJson);
-      if (vanilla == null) {
-        error("Failed to download version manifest, can not find server jar URL.");
-        return false;
-      } 
-      Version.Download server = vanilla.getDownload("server");
-      if (server == null) {
-        error("Failed to download minecraft server, info missing from manifest: " + versionJson);
-        return false;
-      } 
-      versionJson.delete();
-      if (!DownloadUtils.download(this.monitor, this.profile.getMirror(), server, serverTarget)) {
-        serverTarget.delete();
-        error("Downloading minecraft server failed, invalid checksum.\nTry again, or manually place server jar to skip download.");
-        return false;
-      } 
+      this.monitor.phaseStart("minecraft");
+      boolean downloaded = downloadServer(target, serverTarget);
+      this.monitor.phaseEnd("minecraft", downloaded);
+      if (!downloaded)
+        return false; 
     } 
     checkCancel();
     List<File> libDirs = new ArrayList<>();
@@ -84,6 +70,30 @@ public class ServerInstall extends Action {
     return true;
   }
   
+  private boolean downloadServer(File target, File serverTarget) {
+    File parent = serverTarget.getParentFile();
+    if (!parent.exists())
+      parent.mkdirs(); 
+    File versionJson = new File(target, this.profile.getMinecraft() + ".json");
+    Version vanilla = Util.getVanillaVersion(this.profile.getMinecraft(), versionJson);
+    if (vanilla == null) {
+      error("Failed to download version manifest, can not find server jar URL.");
+      return false;
+    } 
+    Version.Download server = vanilla.getDownload("server");
+    if (server == null) {
+      error("Failed to download minecraft server, info missing from manifest: " + versionJson);
+      return false;
+    } 
+    versionJson.delete();
+    if (!DownloadUtils.download(this.monitor, this.profile.getMirror(), server, serverTarget)) {
+      serverTarget.delete();
+      error("Downloading minecraft server failed, invalid checksum.\nTry again, or manually place server jar to skip download.");
+      return false;
+    } 
+    return true;
+  }
+  
   public boolean isPathValid(File targetDir) {
     return (targetDir.exists() && targetDir.isDirectory() && (targetDir.list()).length == 0);
   }
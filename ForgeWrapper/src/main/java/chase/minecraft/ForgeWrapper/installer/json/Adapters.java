@@ -0,0 +1,164 @@
+package chase.minecraft.ForgeWrapper.installer.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+// Hand written readers for the documents every install parses (install profile, version json, version manifest,
+// mirror list). They walk the JsonReader once, fill the fields directly and skip everything they don't use, instead of
+// going through reflection. Writing is left to Gson's reflective adapter, nothing on the hot path serializes these.
+public class Adapters implements TypeAdapterFactory
+{
+	// Reads the value of one field into the target, false when the field isn't known and should be skipped.
+	public interface FieldReader<T>
+	{
+		boolean read(T target, String name, JsonReader in) throws IOException;
+	}
+	
+	public interface ValueReader<T>
+	{
+		T read(JsonReader in) throws IOException;
+	}
+	
+	private static final Map<Class<?>, ValueReader<?>> READERS = Map.of(
+			Install.class, in -> readObject(in, new Install(), Install::read),
+			InstallV1.class, InstallV1::read,
+			Version.class, Version::read,
+			Manifest.class, Manifest::read,
+			Mirror.class, Mirror::read
+	);
+	
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+	{
+		ValueReader<T> reader = (ValueReader<T>) READERS.get(type.getRawType());
+		if (reader == null)
+			return null;
+		TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+		return new TypeAdapter<T>()
+		{
+			public void write(JsonWriter out, T value) throws IOException
+			{
+				delegate.write(out, value);
+			}
+			
+			public T read(JsonReader in) throws IOException
+			{
+				if (in.peek() == JsonToken.NULL)
+				{
+					in.nextNull();
+					return null;
+				}
+				return reader.read(in);
+			}
+		};
+	}
+	
+	public static <T> T readObject(JsonReader in, T target, FieldReader<? super T> reader) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		in.beginObject();
+		while (in.hasNext())
+		{
+			String name = in.nextName();
+			if (!reader.read(target, name, in))
+				in.skipValue();
+		}
+		in.endObject();
+		return target;
+	}
+	
+	public static <T> List<T> readList(JsonReader in, ValueReader<T> reader) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		List<T> ret = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext())
+			ret.add(reader.read(in));
+		in.endArray();
+		return ret;
+	}
+	
+	public static <T> Map<String, T> readMap(JsonReader in, ValueReader<T> reader) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		Map<String, T> ret = new LinkedHashMap<>();
+		in.beginObject();
+		while (in.hasNext())
+			ret.put(in.nextName(), reader.read(in));
+		in.endObject();
+		return ret;
+	}
+	
+	public static String nextString(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+	
+	public static String[] nextStrings(JsonReader in) throws IOException
+	{
+		List<String> list = readList(in, Adapters::nextString);
+		return (list == null) ? null : list.toArray(new String[0]);
+	}
+	
+	public static Artifact nextArtifact(JsonReader in) throws IOException
+	{
+		String descriptor = nextString(in);
+		return (descriptor == null) ? null : Artifact.from(descriptor);
+	}
+	
+	// Null keeps the field's default, like the reflective adapter does for primitives.
+	public static long nextLong(JsonReader in, long def) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return def;
+		}
+		return in.nextLong();
+	}
+	
+	public static int nextInt(JsonReader in, int def) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return def;
+		}
+		return in.nextInt();
+	}
+	
+	public static boolean nextBoolean(JsonReader in, boolean def) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return def;
+		}
+		return in.nextBoolean();
+	}
+}
@@ -1,58 +1,112 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import java.io.File;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Artifacts are interned, every descriptor is parsed once and the same instance is returned after that. The pool is
+// bounded so a long running daemon doesn't keep every artifact it has ever seen, past MAX_POOLED descriptors are
+// parsed each time. Equality is by descriptor, a pooled instance is only the fast path.
 public class Artifact {
-  private String domain;
+  private static final int MAX_POOLED = 8192;
   
-  private String name;
+  // An install uses one libraries root, a daemon a handful. Roots past this aren't cached.
+  private static final int MAX_ROOTS = 4;
   
-  private String version;
+  private static final Map<String, Artifact> POOL = new ConcurrentHashMap<>();
   
-  private String classifier = null;
+  private final String domain;
   
-  private String ext = "jar";
+  private final String name;
   
-  private String path;
+  private final String version;
   
-  private String file;
+  private final String classifier;
   
-  private String descriptor;
+  private final String ext;
+  
+  private final String path;
+  
+  private final String file;
+  
+  private final String descriptor;
+  
+  // Library root -> the file in it.
+  private final Map<File, File> local = new ConcurrentHashMap<>(2);
+  
+  private Artifact(String descriptor, String domain, String name, String version, String classifier, String ext) {
+    this.descriptor = descriptor;
+    this.domain = domain;
+    this.name = name;
+    this.version = version;
+    this.classifier = classifier;
+    this.ext = ext;
+    StringBuilder buf = new StringBuilder(name.length() + version.length() + ext.length() + ((classifier == null) ? 2 : classifier.length() + 3));
+    buf.append(name).append('-').append(version);
+    if (classifier != null)
+      buf.append('-').append(classifier);
+    this.file = buf.append('.').append(ext).toString();
+    this.path = new StringBuilder(domain.length() + name.length() + version.length() + this.file.length() + 3)
+      .append(domain.replace('.', '/')).append('/').append(name).append('/').append(version).append('/').append(this.file).toString();
+  }
   
   public static Artifact from(String descriptor) {
-    Artifact ret = new Artifact();
-    ret.descriptor = descriptor;
-    String[] pts = descriptor.split(":");
-    ret.domain = pts[0];
-    ret.name = pts[1];
-    int last = pts.length - 1;
-    int idx = pts[last].indexOf('@');
-    if (idx != -1) {
-      ret.ext = pts[last].substring(idx + 1);
-      pts[last] = pts[last].substring(0, idx);
-    } 
-    ret.version = pts[2];
-    if (pts.length > 3)
-      ret.classifier = pts[3]; 
-    ret.file = ret.name + '-' + ret.version;
-    if (ret.classifier != null)
-      ret.file += '-' + ret.classifier; 
-    ret.file += '.' + ret.ext;
-    ret.path = ret.domain.replace('.', '/') + '/' + ret.name + '/' + ret.version + '/' + ret.file;
+    Artifact ret = POOL.get(descriptor);
+    if (ret != null)
+      return ret;
+    ret = parse(descriptor);
+    if (POOL.size() < MAX_POOLED) {
+      Artifact pooled = POOL.putIfAbsent(descriptor, ret);
+      if (pooled != null)
+        return pooled;
+    }
     return ret;
   }
   
+  // group:name:version[:classifier][@ext], anything after the classifier is ignored and the extension is taken from
+  // the last part, like the split based parser this replaced.
+  private static Artifact parse(String descriptor) {
+    int end = descriptor.length();
+    // Trailing empty parts don't count.
+    while (end > 0 && descriptor.charAt(end - 1) == ':')
+      end--;
+    int last = descriptor.lastIndexOf(':', end - 1) + 1;
+    String ext = "jar";
+    int at = descriptor.indexOf('@', last);
+    if (at != -1 && at < end) {
+      ext = descriptor.substring(at + 1, end);
+      end = at;
+    }
+    int first = descriptor.indexOf(':');
+    int second = (first == -1) ? -1 : descriptor.indexOf(':', first + 1);
+    if (second == -1 || second >= end)
+      throw new IllegalArgumentException("Invalid artifact descriptor: " + descriptor);
+    int third = descriptor.indexOf(':', second + 1);
+    String version;
+    String classifier = null;
+    if (third == -1 || third >= end) {
+      version = descriptor.substring(second + 1, end);
+    } else {
+      version = descriptor.substring(second + 1, third);
+      int fourth = descriptor.indexOf(':', third + 1);
+      classifier = descriptor.substring(third + 1, (fourth == -1 || fourth >= end) ? end : fourth);
+    }
+    return new Artifact(descriptor, descriptor.substring(0, first), descriptor.substring(first + 1, second), version, classifier, ext);
+  }
+  
   public File getLocalPath(File base) {
-    return new File(base, this.path.replace('/', File.separatorChar));
+    File ret = this.local.get(base);
+    if (ret == null) {
+      ret = new File(base, this.path.replace('/', File.separatorChar));
+      if (this.local.size() < MAX_ROOTS)
+        this.local.putIfAbsent(base, ret);
+    }
+    return ret;
   }
   
   public String getDescriptor() {
@@ -71,13 +125,29 @@ public class Artifact {
     return getDescriptor();
   }
   
-  public static class Adapter implements JsonDeserializer<Artifact>, JsonSerializer<Artifact> {
-    public JsonElement serialize(Artifact src, Type typeOfSrc, JsonSerializationContext context) {
-      return (src == null) ? (JsonElement)JsonNull.INSTANCE : (JsonElement)new JsonPrimitive(src.getDescriptor());
+  public boolean equals(Object obj) {
+    return this == obj || (obj instanceof Artifact other && this.descriptor.equals(other.descriptor));
+  }
+  
+  public int hashCode() {
+    return this.descriptor.hashCode();
+  }
+  
+  public static class Adapter extends TypeAdapter<Artifact> {
+    public void write(JsonWriter out, Artifact src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+      } else {
+        out.value(src.getDescriptor());
+      }
     }
     
-    public Artifact deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-      return json.isJsonPrimitive() ? Artifact.from(json.getAsJsonPrimitive().getAsString()) : null;
+    public Artifact read(JsonReader in) throws IOException {
+      JsonToken token = in.peek();
+      if (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN)
+        return Artifact.from(in.nextString());
+      in.skipValue();
+      return null;
     }
   }
 }
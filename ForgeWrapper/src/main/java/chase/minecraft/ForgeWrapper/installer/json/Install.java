@@ -1,9 +1,12 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
-import chase.minecraft.ForgeWrapper.installer.DownloadUtils;
+import chase.minecraft.ForgeWrapper.installer.MirrorSelector;
 import chase.minecraft.ForgeWrapper.installer.SimpleInstaller;
 
+import com.google.gson.stream.JsonReader;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -104,8 +107,8 @@ public class Install extends Spec
 		if (!this.triedMirrors)
 		{
 			this.triedMirrors = true;
-			Mirror[] list = DownloadUtils.downloadMirrors(getMirrorList());
-			this.mirror = (list == null || list.length == 0) ? null : list[(new Random()).nextInt(list.length)];
+			List<Mirror> list = MirrorSelector.get(getMirrorList());
+			this.mirror = list.isEmpty() ? null : list.get(0);
 		}
 		return this.mirror;
 	}
@@ -144,6 +147,40 @@ public class Install extends Spec
 		return (Map<String, String>) this.data.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> client ? ((DataFile) e.getValue()).client : ((DataFile) e.getValue()).server));
 	}
 	
+	// The spec is read in the same pass as everything else, InstallV1 decides afterwards which fields count.
+	boolean read(String name, JsonReader in) throws IOException
+	{
+		switch (name)
+		{
+			case "spec" -> this.spec = Adapters.nextInt(in, 0);
+			case "profile" -> this.profile = Adapters.nextString(in);
+			case "version" -> this.version = Adapters.nextString(in);
+			case "icon" -> this.icon = Adapters.nextString(in);
+			case "minecraft" -> this.minecraft = Adapters.nextString(in);
+			case "json" -> this.json = Adapters.nextString(in);
+			case "logo" -> this.logo = Adapters.nextString(in);
+			case "path" -> this.path = Adapters.nextArtifact(in);
+			case "urlIcon" -> this.urlIcon = Adapters.nextString(in);
+			case "welcome" -> this.welcome = Adapters.nextString(in);
+			case "mirrorList" -> this.mirrorList = Adapters.nextString(in);
+			case "hideClient" -> this.hideClient = Adapters.nextBoolean(in, false);
+			case "hideServer" -> this.hideServer = Adapters.nextBoolean(in, false);
+			case "hideExtract" -> this.hideExtract = Adapters.nextBoolean(in, false);
+			case "libraries" ->
+			{
+				List<Version.Library> list = Adapters.readList(in, Version.Library::read);
+				this.libraries = (list == null) ? null : list.toArray(new Version.Library[0]);
+			}
+			case "processors" -> this.processors = Adapters.readList(in, Processor::read);
+			case "data" -> this.data = Adapters.readMap(in, DataFile::read);
+			default ->
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	public static class Processor
 	{
 		private List<String> sides;
@@ -180,6 +217,30 @@ public class Install extends Spec
 		{
 			return (this.outputs == null) ? Collections.<String, String>emptyMap() : this.outputs;
 		}
+		
+		static Processor read(JsonReader in) throws IOException
+		{
+			return Adapters.readObject(in, new Processor(), (ret, name, reader) ->
+			{
+				switch (name)
+				{
+					case "sides" -> ret.sides = Adapters.readList(reader, Adapters::nextString);
+					case "jar" -> ret.jar = Adapters.nextArtifact(reader);
+					case "classpath" ->
+					{
+						List<Artifact> list = Adapters.readList(reader, Adapters::nextArtifact);
+						ret.classpath = (list == null) ? null : list.toArray(new Artifact[0]);
+					}
+					case "args" -> ret.args = Adapters.nextStrings(reader);
+					case "outputs" -> ret.outputs = Adapters.readMap(reader, Adapters::nextString);
+					default ->
+					{
+						return false;
+					}
+				}
+				return true;
+			});
+		}
 	}
 	
 	public static class DataFile
@@ -187,5 +248,22 @@ public class Install extends Spec
 		private String client;
 		
 		private String server;
+		
+		static DataFile read(JsonReader in) throws IOException
+		{
+			return Adapters.readObject(in, new DataFile(), (ret, name, reader) ->
+			{
+				switch (name)
+				{
+					case "client" -> ret.client = Adapters.nextString(reader);
+					case "server" -> ret.server = Adapters.nextString(reader);
+					default ->
+					{
+						return false;
+					}
+				}
+				return true;
+			});
+		}
 	}
 }
@@ -1,10 +1,14 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
+import com.google.gson.stream.JsonReader;
 import java.io.File;
+import java.io.IOException;
 
 public class InstallV1 extends Install {
   protected String serverJarPath;
   
+  InstallV1() {}
+  
   public InstallV1(Install v0) {
     this.profile = v0.profile;
     this.version = v0.version;
@@ -29,4 +33,19 @@ public class InstallV1 extends Install {
       return "{ROOT}/minecraft_server.{MINECRAFT_VERSION}.jar"; 
     return this.serverJarPath;
   }
+  
+  // Both specs are read in one pass, a spec 0 profile gets only the fields Install knows about.
+  static InstallV1 read(JsonReader in) throws IOException {
+    InstallV1 ret = Adapters.readObject(in, new InstallV1(), InstallV1::read);
+    if (ret != null && ret.spec == 0)
+      ret.serverJarPath = null; 
+    return ret;
+  }
+  
+  boolean read(String name, JsonReader in) throws IOException {
+    if (!name.equals("serverJarPath"))
+      return super.read(name, in); 
+    this.serverJarPath = Adapters.nextString(in);
+    return true;
+  }
 }
@@ -1,12 +1,39 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Manifest {
   private List<Info> versions;
   
+  // Version id -> info, built on the first lookup. The manifest lists every version ever released.
+  private transient Map<String, Info> index;
+  
   public String getUrl(String version) {
-    return (this.versions == null) ? null : this.versions.stream().filter(v -> version.equals(v.getId())).map(Info::getUrl).findFirst().orElse(null);
+    Info info = getVersion(version);
+    return (info == null) ? null : info.getUrl();
+  }
+  
+  public synchronized Info getVersion(String version) {
+    if (this.index == null) {
+      this.index = new HashMap<>();
+      if (this.versions != null)
+        for (Info info : this.versions)
+          this.index.putIfAbsent(info.getId(), info);  
+    } 
+    return this.index.get(version);
+  }
+  
+  static Manifest read(JsonReader in) throws IOException {
+    return Adapters.readObject(in, new Manifest(), (ret, name, reader) -> {
+          if (!name.equals("versions"))
+            return false; 
+          ret.versions = Adapters.readList(reader, Info::read);
+          return true;
+        });
   }
   
   public static class Info {
@@ -14,6 +41,8 @@ public class Manifest {
     
     private String url;
     
+    private String sha1;
+    
     public String getId() {
       return this.id;
     }
@@ -21,5 +50,23 @@ public class Manifest {
     public String getUrl() {
       return this.url;
     }
+    
+    public String getSha1() {
+      return this.sha1;
+    }
+    
+    static Info read(JsonReader in) throws IOException {
+      return Adapters.readObject(in, new Info(), (ret, name, reader) -> {
+            switch (name) {
+              case "id" -> ret.id = Adapters.nextString(reader);
+              case "url" -> ret.url = Adapters.nextString(reader);
+              case "sha1" -> ret.sha1 = Adapters.nextString(reader);
+              default -> {
+                return false;
+              }
+            } 
+            return true;
+          });
+    }
   }
 }
@@ -1,5 +1,7 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
 import java.net.URL;
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
@@ -55,4 +57,19 @@ public class Mirror {
   public String getUrl() {
     return this.url;
   }
+  
+  static Mirror read(JsonReader in) throws IOException {
+    return Adapters.readObject(in, new Mirror(), (ret, name, reader) -> {
+          switch (name) {
+            case "name" -> ret.name = Adapters.nextString(reader);
+            case "image" -> ret.image = Adapters.nextString(reader);
+            case "homepage" -> ret.homepage = Adapters.nextString(reader);
+            case "url" -> ret.url = Adapters.nextString(reader);
+            default -> {
+              return false;
+            }
+          } 
+          return true;
+        });
+  }
 }
@@ -1,7 +1,7 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
 public class Spec {
-  private int spec = 0;
+  protected int spec = 0;
   
   public int getSpec() {
     return this.spec;
@@ -0,0 +1,140 @@
+package chase.minecraft.ForgeWrapper.installer.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A token pattern ({KEY} replaced from the data map, 'text' quoted, \ escapes the next character) parsed once into
+// alternating literal and key segments. The processors render the same arguments for every install, the compiled
+// form is cached by pattern so that is the only time the pattern is scanned.
+public class TokenTemplate
+{
+	// Patterns come from the installers, a daemon working through many of them stops caching past this.
+	private static final int MAX_CACHED = 4096;
+	
+	private static final Map<String, TokenTemplate> CACHE = new ConcurrentHashMap<>();
+	
+	private final String pattern;
+	
+	// One more literal than keys, literals[x] comes before keys[x].
+	private final String[] literals;
+	
+	private final String[] keys;
+	
+	private final List<String> keyList;
+	
+	private final int length;
+	
+	private TokenTemplate(String pattern, String[] literals, String[] keys)
+	{
+		this.pattern = pattern;
+		this.literals = literals;
+		this.keys = keys;
+		this.keyList = List.of(keys);
+		int length = 0;
+		for (String literal : literals)
+			length += literal.length();
+		this.length = length;
+	}
+	
+	public static TokenTemplate compile(String pattern)
+	{
+		TokenTemplate ret = CACHE.get(pattern);
+		if (ret != null)
+			return ret;
+		ret = parse(pattern);
+		if (CACHE.size() < MAX_CACHED)
+			CACHE.putIfAbsent(pattern, ret);
+		return ret;
+	}
+	
+	private static TokenTemplate parse(String value)
+	{
+		List<String> literals = new ArrayList<>();
+		List<String> keys = new ArrayList<>();
+		StringBuilder buf = new StringBuilder();
+		for (int x = 0; x < value.length(); x++)
+		{
+			char c = value.charAt(x);
+			if (c == '\\')
+			{
+				if (x == value.length() - 1)
+					throw new IllegalArgumentException("Illegal pattern (Bad escape): " + value);
+				buf.append(value.charAt(++x));
+			} else if (c == '{' || c == '\'')
+			{
+				char close = (c == '{') ? '}' : '\'';
+				// Quoted text is a literal, it goes into the same buffer.
+				int mark = buf.length();
+				int y = x + 1;
+				for (; ; y++)
+				{
+					if (y == value.length())
+						throw new IllegalArgumentException("Illegal pattern (Unclosed " + c + "): " + value);
+					char d = value.charAt(y);
+					if (d == '\\')
+					{
+						if (y == value.length() - 1)
+							throw new IllegalArgumentException("Illegal pattern (Bad escape): " + value);
+						buf.append(value.charAt(++y));
+					} else if (d == close)
+					{
+						break;
+					} else
+					{
+						buf.append(d);
+					}
+				}
+				x = y;
+				if (c == '{')
+				{
+					keys.add(buf.substring(mark));
+					buf.setLength(mark);
+					literals.add(buf.toString());
+					buf.setLength(0);
+				}
+			} else
+			{
+				buf.append(c);
+			}
+		}
+		literals.add(buf.toString());
+		return new TokenTemplate(value, literals.toArray(new String[0]), keys.toArray(new String[0]));
+	}
+	
+	public String getPattern()
+	{
+		return this.pattern;
+	}
+	
+	public List<String> getKeys()
+	{
+		return this.keyList;
+	}
+	
+	// Every key is looked up before anything is built, a missing one fails the render without partial output.
+	public String render(Map<String, String> tokens)
+	{
+		if (this.keys.length == 0)
+			return this.literals[0];
+		String[] values = new String[this.keys.length];
+		int length = this.length;
+		for (int x = 0; x < this.keys.length; x++)
+		{
+			String value = tokens.get(this.keys[x]);
+			if (value == null)
+			{
+				if (!tokens.containsKey(this.keys[x]))
+					throw new IllegalArgumentException("Illegal pattern: " + this.pattern + " Missing Key: " + this.keys[x]);
+				value = "null";
+			}
+			values[x] = value;
+			length += value.length();
+		}
+		StringBuilder buf = new StringBuilder(length);
+		for (int x = 0; x < this.keys.length; x++)
+			buf.append(this.literals[x]).append(values[x]);
+		return buf.append(this.literals[this.keys.length]).toString();
+	}
+}
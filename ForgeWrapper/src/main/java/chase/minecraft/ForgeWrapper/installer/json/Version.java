@@ -1,5 +1,8 @@
 package chase.minecraft.ForgeWrapper.installer.json;
 
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 public class Version {
@@ -7,6 +10,17 @@ public class Version {
   
   private Library[] libraries;
   
+  // The json this was read from, when it came from the installer, so it is written out as is.
+  private transient byte[] source;
+  
+  public byte[] getSource() {
+    return this.source;
+  }
+  
+  void setSource(byte[] value) {
+    this.source = value;
+  }
+  
   public Download getDownload(String key) {
     return (this.downloads == null) ? null : this.downloads.get(key);
   }
@@ -15,20 +29,59 @@ public class Version {
     return (this.libraries == null) ? new Library[0] : this.libraries;
   }
   
+  static Version read(JsonReader in) throws IOException {
+    return Adapters.readObject(in, new Version(), (ret, name, reader) -> {
+          switch (name) {
+            case "downloads" -> ret.downloads = Adapters.readMap(reader, Download::read);
+            case "libraries" -> {
+              List<Library> list = Adapters.readList(reader, Library::read);
+              ret.libraries = (list == null) ? null : list.toArray(new Library[0]);
+            }
+            default -> {
+              return false;
+            }
+          } 
+          return true;
+        });
+  }
+  
   public static class Download {
     private String sha1;
     
     private String url;
     
+    private long size = -1L;
+    
     private boolean provided = false;
     
     public String getSha1() {
       return this.sha1;
     }
     
+    public long getSize() {
+      return this.size;
+    }
+    
     public String getUrl() {
       return (this.url == null || this.provided) ? "" : this.url;
     }
+    
+    static Download read(JsonReader in) throws IOException {
+      return Adapters.readObject(in, new Download(), Download::read);
+    }
+    
+    boolean read(String name, JsonReader in) throws IOException {
+      switch (name) {
+        case "sha1" -> this.sha1 = Adapters.nextString(in);
+        case "url" -> this.url = Adapters.nextString(in);
+        case "size" -> this.size = Adapters.nextLong(in, -1L);
+        case "provided" -> this.provided = Adapters.nextBoolean(in, false);
+        default -> {
+          return false;
+        }
+      } 
+      return true;
+    }
   }
   
   public static class LibraryDownload extends Download {
@@ -41,6 +94,17 @@ public class Version {
     public void setPath(String value) {
       this.path = value;
     }
+    
+    static LibraryDownload read(JsonReader in) throws IOException {
+      return Adapters.readObject(in, new LibraryDownload(), LibraryDownload::read);
+    }
+    
+    boolean read(String name, JsonReader in) throws IOException {
+      if (!name.equals("path"))
+        return super.read(name, in); 
+      this.path = Adapters.nextString(in);
+      return true;
+    }
   }
   
   public static class Library {
@@ -55,6 +119,19 @@ public class Version {
     public Version.Downloads getDownloads() {
       return this.downloads;
     }
+    
+    static Library read(JsonReader in) throws IOException {
+      return Adapters.readObject(in, new Library(), (ret, name, reader) -> {
+            switch (name) {
+              case "name" -> ret.name = Adapters.nextArtifact(reader);
+              case "downloads" -> ret.downloads = Downloads.read(reader);
+              default -> {
+                return false;
+              }
+            } 
+            return true;
+          });
+    }
   }
   
   public static class Downloads {
@@ -63,5 +140,14 @@ public class Version {
     public Version.LibraryDownload getArtifact() {
       return this.artifact;
     }
+    
+    static Downloads read(JsonReader in) throws IOException {
+      return Adapters.readObject(in, new Downloads(), (ret, name, reader) -> {
+            if (!name.equals("artifact"))
+              return false; 
+            ret.artifact = LibraryDownload.read(reader);
+            return true;
+          });
+    }
   }
 }
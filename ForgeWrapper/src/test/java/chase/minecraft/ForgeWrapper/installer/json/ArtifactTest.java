@@ -0,0 +1,96 @@
+package chase.minecraft.ForgeWrapper.installer.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The expected paths are what the split based parser produced for the same descriptors.
+public class ArtifactTest
+{
+	@Test
+	public void plain()
+	{
+		assertPath("net/minecraftforge/forge/1.20.1-47.1.0/forge-1.20.1-47.1.0.jar", "net.minecraftforge:forge:1.20.1-47.1.0");
+	}
+	
+	@Test
+	public void classifier()
+	{
+		assertPath("net/minecraftforge/forge/1.20.1-47.1.0/forge-1.20.1-47.1.0-universal.jar", "net.minecraftforge:forge:1.20.1-47.1.0:universal");
+	}
+	
+	@Test
+	public void extension()
+	{
+		assertPath("de/oceanlabs/mcp/mcp_config/1.20.1-20230612.114412/mcp_config-1.20.1-20230612.114412.zip", "de.oceanlabs.mcp:mcp_config:1.20.1-20230612.114412@zip");
+		assertPath("net/minecraft/client/1.20.1-20230612.114412/client-1.20.1-20230612.114412-mappings.txt", "net.minecraft:client:1.20.1-20230612.114412:mappings@txt");
+	}
+	
+	@Test
+	public void trailingSeparators()
+	{
+		assertPath("g/n/v/n-v.jar", "g:n:v:");
+		assertPath("g/n/v/n-v.jar", "g:n:v::");
+		assertPath("g/n/v/n-v-c.jar", "g:n:v:c:");
+		assertPath("g/n/v/n-v-c.zip", "g:n:v:c@zip:");
+	}
+	
+	// Only the last part can carry the extension.
+	@Test
+	public void atInVersion()
+	{
+		assertPath("g/n/1.0@2/n-1.0@2-cls.jar", "g:n:1.0@2:cls");
+		assertPath("g/n/1.0/n-1.0.2", "g:n:1.0@2");
+	}
+	
+	@Test
+	public void fifthPart()
+	{
+		assertPath("g/n/v/n-v-c.jar", "g:n:v:c:extra");
+		assertPath("g/n/v/n-v-c.zip", "g:n:v:c:extra@zip");
+	}
+	
+	@Test
+	public void emptyParts()
+	{
+		assertPath("g/n/v/n-v-.zip", "g:n:v::@zip");
+		assertPath("g/n//n-.zip", "g:n:@zip");
+	}
+	
+	@Test
+	public void invalid()
+	{
+		assertThrows(IllegalArgumentException.class, () -> Artifact.from("g:n"));
+		assertThrows(IllegalArgumentException.class, () -> Artifact.from("g"));
+	}
+	
+	@Test
+	public void interned()
+	{
+		Artifact artifact = Artifact.from("g:n:v:interned");
+		assertSame(artifact, Artifact.from(new String("g:n:v:interned")));
+		assertEquals("g:n:v:interned", artifact.getDescriptor());
+		assertEquals("n-v-interned.jar", artifact.getFilename());
+	}
+	
+	@Test
+	public void localPath()
+	{
+		File root = new File("libraries");
+		Artifact artifact = Artifact.from("net.minecraftforge:forge:1.20.1-47.1.0:universal");
+		File expected = new File(root, "net/minecraftforge/forge/1.20.1-47.1.0/forge-1.20.1-47.1.0-universal.jar".replace('/', File.separatorChar));
+		assertEquals(expected, artifact.getLocalPath(root));
+		assertEquals(expected, artifact.getLocalPath(root));
+		for (int x = 0; x < 8; x++)
+			assertEquals(new File("root" + x, "net/minecraftforge/forge/1.20.1-47.1.0/forge-1.20.1-47.1.0-universal.jar".replace('/', File.separatorChar)), artifact.getLocalPath(new File("root" + x)));
+	}
+	
+	private static void assertPath(String expected, String descriptor)
+	{
+		Artifact artifact = Artifact.from(descriptor);
+		assertEquals(expected, artifact.getPath(), descriptor);
+		assertEquals(expected.substring(expected.lastIndexOf('/') + 1), artifact.getFilename(), descriptor);
+	}
+}
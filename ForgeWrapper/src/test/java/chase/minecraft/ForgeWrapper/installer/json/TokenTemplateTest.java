@@ -0,0 +1,110 @@
+package chase.minecraft.ForgeWrapper.installer.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The expected output and error messages are what the character by character replaceTokens produced before patterns
+// were compiled.
+public class TokenTemplateTest
+{
+	private static final Map<String, String> TOKENS = new HashMap<>();
+	
+	static
+	{
+		TOKENS.put("ROOT", "/srv/mc");
+		TOKENS.put("MINECRAFT_VERSION", "1.20.1");
+		TOKENS.put("SIDE", "client");
+		TOKENS.put("EMPTY", "");
+		TOKENS.put("NULL", null);
+		TOKENS.put("a}b", "X");
+		TOKENS.put("it's", "Q");
+		TOKENS.put("", "E");
+	}
+	
+	@Test
+	public void literals()
+	{
+		assertRender("plain", "plain");
+		assertRender("", "");
+	}
+	
+	@Test
+	public void keys()
+	{
+		assertRender("/srv/mc", "{ROOT}");
+		assertRender("/srv/mc/versions/1.20.1/1.20.1.jar", "{ROOT}/versions/{MINECRAFT_VERSION}/{MINECRAFT_VERSION}.jar");
+		assertRender("--side=client", "--side={SIDE}");
+		assertRender("/srv/mcclient", "{ROOT}{SIDE}");
+		assertRender("x", "{EMPTY}x");
+		assertRender("E", "{}");
+	}
+	
+	// A key that is present with no value renders as "null", like StringBuilder.append did.
+	@Test
+	public void nullValue()
+	{
+		assertRender("null", "{NULL}");
+	}
+	
+	@Test
+	public void quotes()
+	{
+		assertRender("{ROOT}", "'{ROOT}'");
+		assertRender("abc", "a'b'c");
+		assertRender("", "''");
+		assertRender("{/srv/mc}", "'{'{ROOT}'}'");
+		assertRender("Q", "{it's}");
+	}
+	
+	@Test
+	public void escapes()
+	{
+		assertRender("it's", "it\\'s");
+		assertRender("{ROOT}", "\\{ROOT\\}");
+		assertRender("X", "{a\\}b}");
+		assertRender("x'y", "'x\\'y'");
+	}
+	
+	@Test
+	public void missingKey()
+	{
+		assertError("Illegal pattern: {MISSING} Missing Key: MISSING", "{MISSING}");
+		assertError("Illegal pattern: {ROOT}/{MISSING} Missing Key: MISSING", "{ROOT}/{MISSING}");
+	}
+	
+	@Test
+	public void malformed()
+	{
+		assertError("Illegal pattern (Unclosed {): {ROOT", "{ROOT");
+		assertError("Illegal pattern (Unclosed '): 'open", "'open");
+		assertError("Illegal pattern (Bad escape): bad\\", "bad\\");
+		assertError("Illegal pattern (Bad escape): {ROOT\\", "{ROOT\\");
+		assertError("Illegal pattern (Bad escape): 'q\\", "'q\\");
+	}
+	
+	@Test
+	public void compiledOnce()
+	{
+		TokenTemplate template = TokenTemplate.compile("{ROOT}/libraries/{SIDE}");
+		assertSame(template, TokenTemplate.compile("{ROOT}/libraries/{SIDE}"));
+		assertEquals(List.of("ROOT", "SIDE"), template.getKeys());
+		assertEquals("/srv/mc/libraries/client", template.render(TOKENS));
+		assertEquals("/a/libraries/server", template.render(Map.of("ROOT", "/a", "SIDE", "server")));
+	}
+	
+	private static void assertRender(String expected, String pattern)
+	{
+		assertEquals(expected, Util.replaceTokens(TOKENS, pattern), pattern);
+	}
+	
+	private static void assertError(String expected, String pattern)
+	{
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Util.replaceTokens(TOKENS, pattern));
+		assertEquals(expected, e.getMessage(), pattern);
+	}
+}